@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+/**
+ * Methods the benchmarks wrap
+ * <p>
+ * Named by parameter shape and number of {@link LogAs} parameters, and looked
+ * up by name from the benchmark parameters. The bodies are empty, the
+ * interceptor never calls them anyway.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@SuppressWarnings("unused")
+public class BenchmarkTarget {
+
+    public void scalar0() {
+    }
+
+    public void scalar1(@LogAs("f0") String f0) {
+    }
+
+    public void scalar2(@LogAs("f0") String f0,
+                        @LogAs("f1") String f1) {
+    }
+
+    public void scalar5(@LogAs("f0") String f0,
+                        @LogAs("f1") String f1,
+                        @LogAs("f2") String f2,
+                        @LogAs("f3") String f3,
+                        @LogAs("f4") String f4) {
+    }
+
+    public void scalar10(@LogAs("f0") String f0,
+                         @LogAs("f1") String f1,
+                         @LogAs("f2") String f2,
+                         @LogAs("f3") String f3,
+                         @LogAs("f4") String f4,
+                         @LogAs("f5") String f5,
+                         @LogAs("f6") String f6,
+                         @LogAs("f7") String f7,
+                         @LogAs("f8") String f8,
+                         @LogAs("f9") String f9) {
+    }
+
+    public void primitiveArray1(@LogAs("f0") int[] f0) {
+    }
+
+    public void primitiveArray2(@LogAs("f0") int[] f0,
+                                @LogAs("f1") int[] f1) {
+    }
+
+    public void primitiveArray5(@LogAs("f0") int[] f0,
+                                @LogAs("f1") int[] f1,
+                                @LogAs("f2") int[] f2,
+                                @LogAs("f3") int[] f3,
+                                @LogAs("f4") int[] f4) {
+    }
+
+    public void primitiveArray10(@LogAs("f0") int[] f0,
+                                 @LogAs("f1") int[] f1,
+                                 @LogAs("f2") int[] f2,
+                                 @LogAs("f3") int[] f3,
+                                 @LogAs("f4") int[] f4,
+                                 @LogAs("f5") int[] f5,
+                                 @LogAs("f6") int[] f6,
+                                 @LogAs("f7") int[] f7,
+                                 @LogAs("f8") int[] f8,
+                                 @LogAs("f9") int[] f9) {
+    }
+
+    public void nestedArray1(@LogAs("f0") int[][] f0) {
+    }
+
+    public void nestedArray2(@LogAs("f0") int[][] f0,
+                             @LogAs("f1") int[][] f1) {
+    }
+
+    public void nestedArray5(@LogAs("f0") int[][] f0,
+                             @LogAs("f1") int[][] f1,
+                             @LogAs("f2") int[][] f2,
+                             @LogAs("f3") int[][] f3,
+                             @LogAs("f4") int[][] f4) {
+    }
+
+    public void nestedArray10(@LogAs("f0") int[][] f0,
+                              @LogAs("f1") int[][] f1,
+                              @LogAs("f2") int[][] f2,
+                              @LogAs("f3") int[][] f3,
+                              @LogAs("f4") int[][] f4,
+                              @LogAs("f5") int[][] f5,
+                              @LogAs("f6") int[][] f6,
+                              @LogAs("f7") int[][] f7,
+                              @LogAs("f8") int[][] f8,
+                              @LogAs("f9") int[][] f9) {
+    }
+
+    public void trackingId(@LogAs("trackingId") @GenerateTrackingId String trackingId) {
+    }
+
+    public void layer(@LogAs("trackingId") @GenerateTrackingId String trackingId,
+                      @LogAs("recordId") String recordId) {
+    }
+
+    public void eager(@LogAs("ids") long[] ids,
+                      @LogAs("request") Object request) {
+    }
+
+    public void lazy(@LogAs(value = "ids", lazy = true) long[] ids,
+                     @LogAs(value = "request", lazy = true) Object request) {
+    }
+
+    public void footprint(@LogAs("f0") String f0,
+                          @LogAs("f1") String f1,
+                          @LogAs("f2") String f2,
+                          @LogAs("f3") String f3,
+                          @LogAs("f4") String f4,
+                          @LogAs(value = "ids", lazy = true) long[] ids,
+                          @LogAs("requestId") @GenerateTrackingId(TrackingIdGenerator.COUNTER) String requestId) {
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+/**
+ * Cost per task of propagating the MDC to an executor
+ * <p>
+ * Each invocation submits {@value #TASKS} tiny tasks (that read the MDC) and
+ * waits for all of them, the score is per task.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ExecutorBenchmark {
+
+    static final int TASKS = 1_000_000;
+
+    /**
+     * Number of MDC entries on the submitting thread
+     */
+    @Param({"2", "16"})
+    public int entries;
+
+    @Param({"4"})
+    public int threads;
+
+    private static volatile String sink;
+
+    private ExecutorService pool;
+    private ExecutorService wrapped;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(threads);
+        wrapped = MDCExecutors.wrap(pool);
+        MDC.clear();
+        MDC.put("trackingId", "a8a1d2e2-42b4-4f0f-8fe1-d1a3b0f0a0b1");
+        for (int i = 1 ; i < entries ; i++) {
+            MDC.put("key" + i, "value" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        MDC.clear();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * No propagation
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void plain() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0 ; i < TASKS ; i++) {
+            pool.execute(() -> task(latch));
+        }
+        latch.await();
+    }
+
+    /**
+     * The usual approach: a copy of the MDC for every task
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void copyPerTask() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0 ; i < TASKS ; i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> copy = MDC.getCopyOfContextMap();
+            pool.execute(() -> {
+                @SuppressWarnings("unchecked")
+                Map<String, String> previous = MDC.getCopyOfContextMap();
+                MDC.setContextMap(copy);
+                try {
+                    task(latch);
+                } finally {
+                    if (previous == null)
+                        MDC.clear();
+                    else
+                        MDC.setContextMap(previous);
+                }
+            });
+        }
+        latch.await();
+    }
+
+    /**
+     * {@link MDCExecutors#wrap(ExecutorService)} - a shared snapshot
+     */
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void snapshot() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0 ; i < TASKS ; i++) {
+            wrapped.execute(() -> task(latch));
+        }
+        latch.await();
+    }
+
+    private static void task(CountDownLatch latch) {
+        String trackingId = MDC.get("trackingId");
+        if (trackingId != null && trackingId.isEmpty())
+            sink = trackingId;
+        latch.countDown();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.logstash.logback.encoder.LogstashEncoder;
+import net.logstash.logback.fieldnames.LogstashFieldNames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Events per second of {@link MDCJsonEncoder} vs. the {@link LogstashEncoder}
+ * with the field names of the example logback.xml
+ * <p>
+ * Run with {@code -prof gc} to get the allocation rate per event.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonEncoderBenchmark {
+
+    @Param({"none", "annotated", "populated"})
+    public String mdc;
+
+    @Param({"plain", "escaped"})
+    public String message;
+
+    private LoggingEvent event;
+    private MDCJsonEncoder mdcJsonEncoder;
+    private LogstashEncoder logstashEncoder;
+
+    @Setup
+    public void setup() throws Exception {
+        // Makes f0..f4 known to the encoder
+        MDCInterceptorBenchmark.method("scalar5");
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        mdcJsonEncoder = new MDCJsonEncoder();
+        mdcJsonEncoder.setContext(context);
+        mdcJsonEncoder.start();
+
+        logstashEncoder = new LogstashEncoder();
+        logstashEncoder.setContext(context);
+        LogstashFieldNames fieldNames = new LogstashFieldNames();
+        fieldNames.setTimestamp("timestamp");
+        fieldNames.setThread("thread");
+        fieldNames.setLogger("logger");
+        fieldNames.setVersion("version");
+        fieldNames.setMdc("mdc");
+        fieldNames.setMessage("message");
+        logstashEncoder.setFieldNames(fieldNames);
+        logstashEncoder.start();
+
+        event = new LoggingEvent();
+        event.setLoggerName(JsonEncoderBenchmark.class.getName());
+        event.setThreadName("http-thread-pool::http-listener(3)");
+        event.setLevel(Level.INFO);
+        event.setTimeStamp(System.currentTimeMillis());
+        event.setMessage(message(message));
+        event.setMDCPropertyMap(mdc(mdc));
+    }
+
+    @Benchmark
+    public byte[] mdcJsonEncoder() {
+        return mdcJsonEncoder.encode(event);
+    }
+
+    @Benchmark
+    public byte[] logstashEncoder() {
+        return logstashEncoder.encode(event);
+    }
+
+    static String message(String message) {
+        switch (message) {
+            case "plain":
+                return "Fetched record 870970-basis:12345678 in 12ms";
+            case "escaped":
+                return "Fetched record \"Ærø\" (870970-basis:12345678)\n\tin 12ms";
+            default:
+                throw new IllegalArgumentException("Unknown message: " + message);
+        }
+    }
+
+    static Map<String, String> mdc(String mdc) {
+        Map<String, String> map = new LinkedHashMap<>();
+        switch (mdc) {
+            case "none":
+                return map;
+            case "populated":
+                for (int i = 0 ; i < MDCInterceptorBenchmark.UPSTREAM_MDC_SIZE ; i++) {
+                    map.put("upstream-" + i, "upstream-value-" + i);
+                }
+                break;
+            case "annotated":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mdc: " + mdc);
+        }
+        for (int i = 0 ; i < 5 ; i++) {
+            map.put("f" + i, "some-value-" + i);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Eager vs. lazy {@link LogAs} values
+ * <p>
+ * The method body logs one statement, either at a disabled level (debug) or
+ * at an enabled level (info). The log events go to an appender that only
+ * reads the MDC.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LazyBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyBenchmark.class);
+
+    @Param({"eager", "lazy"})
+    public String method;
+
+    @Param({"false", "true"})
+    public boolean logs;
+
+    private MDCInterceptor interceptor;
+    private StubInvocationContext context;
+
+    @Setup
+    public void setup() throws Exception {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+        ch.qos.logback.classic.Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        MdcReadingAppender appender = new MdcReadingAppender();
+        appender.setContext(loggerContext);
+        appender.start();
+        root.addAppender(appender);
+
+        Method target = MDCInterceptorBenchmark.method(method);
+        LazyMDCTurboFilter.install();
+
+        long[] ids = new long[100];
+        Arrays.setAll(ids, i -> 10_000_000L + i);
+        context = new StubInvocationContext(new BenchmarkTarget(), target, new Object[] {ids, new Request()}, null) {
+            @Override
+            public Object proceed() throws Exception {
+                if (logs)
+                    log.info("Processing");
+                else
+                    log.debug("Processing");
+                return null;
+            }
+        };
+        interceptor = new MDCInterceptor();
+        MDC.clear();
+    }
+
+    @Benchmark
+    public Object call() throws Exception {
+        return interceptor.methodInvocation(context);
+    }
+
+    /**
+     * Something with a costly generated {@code toString()}
+     */
+    public static class Request {
+
+        private final String agencyId = "870970";
+        private final String profile = "default";
+        private final String[] fields = new String[] {"title", "creator", "subject", "abstract"};
+        private final Map<String, String> options = new HashMap<>(Map.of("format", "marcxchange", "trackingId", "abc"));
+
+        @Override
+        public String toString() {
+            return "Request{" + "agencyId=" + agencyId + ", profile=" + profile + ", fields=" + Arrays.toString(fields) + ", options=" + options + '}';
+        }
+    }
+
+    private static class MdcReadingAppender extends AppenderBase<ILoggingEvent> {
+
+        private int size;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            size += event.getMDCPropertyMap().size();
+        }
+    }
+}
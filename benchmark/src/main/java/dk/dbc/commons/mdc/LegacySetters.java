@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.MDC;
+
+/**
+ * The parameter setters as they were, before they became method handles
+ * <p>
+ * A {@code Consumer<Object[]>} per parameter, called in a loop. Kept here
+ * as a reference for {@link SetterChainBenchmark}.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class LegacySetters {
+
+    private LegacySetters() {
+    }
+
+    static void applyAll(Consumer<Object[]>[] functions, Object[] params) {
+        for (Consumer<Object[]> function : functions) {
+            function.accept(params);
+        }
+    }
+
+    static Consumer<Object[]> makeTrackingIdSetter(int pos, TrackingIdGenerator generator) {
+        return params -> {
+            if (params[pos] == null || ( (String) params[pos] ).trim().isEmpty())
+                params[pos] = generator.generate();
+        };
+    }
+
+    static Consumer<Object[]> makeMDCSetter(int pos, String field, boolean includeNull, Class<?> type) {
+        if (type.isArray()) {
+            type = type.getComponentType();
+            if (type.isArray()) {
+                return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.deepToString((Object[]) o));
+            } else if (type.isPrimitive()) {
+                switch (type.getName()) {
+                    case "double":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((double[]) o));
+                    case "float":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((float[]) o));
+                    case "long":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((long[]) o));
+                    case "int":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((int[]) o));
+                    case "short":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((short[]) o));
+                    case "char":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((char[]) o));
+                    case "byte":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((byte[]) o));
+                    case "boolean":
+                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((boolean[]) o));
+                    default:
+                        throw new IllegalStateException("Type: " + type.getName() + " is primitive but not (yet) supported");
+                }
+            } else {
+                return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((Object[]) o));
+            }
+        } else {
+            return params -> {
+                Object param = params[pos];
+                if (param != null || includeNull) {
+                    MDC.put(field, String.valueOf(param));
+                }
+            };
+        }
+    }
+
+    private static Consumer<Object[]> makeMDCArraySetter(int pos, String field, boolean includeNull, Function<Object, String> toString) {
+        return params -> {
+            Object param = params[pos];
+            if (param != null) {
+                MDC.put(field, toString.apply(param));
+            } else if (includeNull) {
+                MDC.put(field, "null");
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+/**
+ * End to end cost of {@link MDCInterceptor#methodInvocation} per call
+ * <p>
+ * Covers the wrapper lookup, the MDC snapshot, the parameter setters and the
+ * MDC restore for a varying number of {@link LogAs} parameters of different
+ * shapes, with an empty MDC and with an MDC already populated by "upstream"
+ * filters.
+ * <p>
+ * Run with {@code -prof gc} to get the allocation rate per call.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MDCInterceptorBenchmark {
+
+    /**
+     * Number of MDC entries set before the call, when the MDC is "populated"
+     */
+    static final int UPSTREAM_MDC_SIZE = 16;
+
+    @Param({"0", "1", "2", "5", "10"})
+    public int parameters;
+
+    @Param({"scalar", "primitiveArray", "nestedArray"})
+    public String shape;
+
+    @Param({"empty", "populated"})
+    public String mdc;
+
+    @Param({"full", "delta"})
+    public String restore;
+
+    private MDCInterceptor interceptor;
+    private StubInvocationContext context;
+    private StubInvocationContext trackingIdContext;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty(MDCInterceptor.RESTORE_MODE_PROPERTY, restore);
+        Method method = method(parameters == 0 ? "scalar0" : shape + parameters);
+        Object[] values = new Object[parameters];
+        Arrays.fill(values, value(shape));
+        context = context(method, values);
+
+        Method trackingId = method("trackingId");
+        trackingIdContext = context(trackingId, new Object[] {null});
+
+        interceptor = new MDCInterceptor();
+        populateMdc(mdc);
+    }
+
+    @Benchmark
+    public Object baseline() throws Exception {
+        return context.proceed();
+    }
+
+    @Benchmark
+    public Object intercepted() throws Exception {
+        return interceptor.methodInvocation(context);
+    }
+
+    @Benchmark
+    public Object trackingIdGenerated() throws Exception {
+        trackingIdContext.getParameters()[0] = null;
+        return interceptor.methodInvocation(trackingIdContext);
+    }
+
+    @Benchmark
+    public Object trackingIdGiven() throws Exception {
+        trackingIdContext.getParameters()[0] = "given-tracking-id";
+        return interceptor.methodInvocation(trackingIdContext);
+    }
+
+    /**
+     * Lookup a {@link BenchmarkTarget} method, and register a wrapper for it
+     *
+     * @param name name of method
+     * @return the wrapped method
+     * @throws NoSuchMethodException if the method isn't declared
+     */
+    static Method method(String name) throws NoSuchMethodException {
+        for (Method method : BenchmarkTarget.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                HashMap<Method, MDCInterceptor.Invoker> wrappers = new HashMap<>();
+                String error = MDCInterceptor.wrapMethod(method, wrappers);
+                if (error != null)
+                    throw new IllegalStateException(error);
+                MDCInterceptor.register(wrappers);
+                return method;
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    static StubInvocationContext context(Method method, Object[] parameters) {
+        return new StubInvocationContext(new BenchmarkTarget(), method, parameters, null);
+    }
+
+    static Object value(String shape) {
+        switch (shape) {
+            case "scalar":
+                return "some-value";
+            case "primitiveArray":
+                return new int[] {1, 2, 3, 4, 5, 6, 7, 8};
+            case "nestedArray":
+                return new int[][] {{1, 2}, {3, 4}, {5, 6}};
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+    }
+
+    static void populateMdc(String mdc) {
+        MDC.clear();
+        switch (mdc) {
+            case "empty":
+                break;
+            case "populated":
+                for (int i = 0 ; i < UPSTREAM_MDC_SIZE ; i++) {
+                    MDC.put("upstream-" + i, "upstream-value-" + i);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mdc: " + mdc);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+/**
+ * A chain of intercepted calls, that pass the same values along
+ * <p>
+ * Like a request that goes through a number of beans, each with
+ * {@code @LogAs("trackingId") @GenerateTrackingId String trackingId,
+ * @LogAs("recordId") String recordId}. With {@code values=same} every layer
+ * gets the same values, with {@code values=different} each layer has its own
+ * recordId.
+ * <p>
+ * {@code legacy} does what every layer used to do: copy the MDC, put the
+ * values and set the copy back.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NestedCallBenchmark {
+
+    @Param({"1", "4"})
+    public int depth;
+
+    @Param({"same", "different"})
+    public String values;
+
+    @Param({"empty", "populated"})
+    public String mdc;
+
+    @Param({"full", "delta"})
+    public String restore;
+
+    private MDCInterceptor interceptor;
+    private StubInvocationContext chain;
+    private String[][] layers;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty(MDCInterceptor.RESTORE_MODE_PROPERTY, restore);
+        Method method = MDCInterceptorBenchmark.method("layer");
+        interceptor = new MDCInterceptor();
+        layers = new String[depth][];
+        StubInvocationContext next = null;
+        for (int i = depth - 1 ; i >= 0 ; i--) {
+            String recordId = values.equals("same") ? "870970-basis:12345678" : "870970-basis:1234567" + i;
+            layers[i] = new String[] {"tracking-id", recordId};
+            next = new ChainContext(method, new Object[] {"tracking-id", recordId}, next);
+        }
+        chain = next;
+        MDCInterceptorBenchmark.populateMdc(mdc);
+    }
+
+    @Benchmark
+    public Object intercepted() throws Exception {
+        return interceptor.methodInvocation(chain);
+    }
+
+    @Benchmark
+    public Object legacy() throws Exception {
+        return legacy(0);
+    }
+
+    private Object legacy(int layer) {
+        if (layer == depth)
+            return null;
+        @SuppressWarnings("unchecked")
+        Map<String, String> oldMdc = MDC.getCopyOfContextMap();
+        try {
+            MDC.put("trackingId", layers[layer][0]);
+            MDC.put("recordId", layers[layer][1]);
+            return legacy(layer + 1);
+        } finally {
+            if (oldMdc == null)
+                MDC.clear();
+            else
+                MDC.setContextMap(oldMdc);
+        }
+    }
+
+    /**
+     * Context that calls the next layer through the interceptor
+     */
+    private class ChainContext extends StubInvocationContext {
+
+        private final StubInvocationContext next;
+
+        ChainContext(Method method, Object[] parameters, StubInvocationContext next) {
+            super(new BenchmarkTarget(), method, parameters, null);
+            this.next = next;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            if (next == null)
+                return null;
+            return interceptor.methodInvocation(next);
+        }
+    }
+}
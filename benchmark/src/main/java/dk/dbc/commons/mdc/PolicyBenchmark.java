@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.event.Level;
+
+/**
+ * Cost of the interceptor under the different {@link MDCPolicy} modes
+ * <p>
+ * In {@code LOGGER_ENABLED} the policy checks for TRACE, which isn't enabled
+ * with the default logback configuration, so that is the cost of the
+ * disabled path.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PolicyBenchmark {
+
+    @Param({"FULL", "LOGGER_ENABLED", "OFF"})
+    public String policy;
+
+    @Param({"empty", "populated"})
+    public String mdc;
+
+    private MDCInterceptor interceptor;
+    private StubInvocationContext scalars;
+    private StubInvocationContext trackingId;
+
+    @Setup
+    public void setup() throws Exception {
+        MDCPolicy.set(MDCPolicy.Mode.valueOf(policy), MDCPolicy.class.getPackageName(), Level.TRACE);
+        Object[] values = new Object[5];
+        Arrays.fill(values, "some-value");
+        scalars = MDCInterceptorBenchmark.context(MDCInterceptorBenchmark.method("scalar5"), values);
+        trackingId = MDCInterceptorBenchmark.context(MDCInterceptorBenchmark.method("layer"), new Object[] {null, "record-id"});
+        interceptor = new MDCInterceptor();
+        MDCInterceptorBenchmark.populateMdc(mdc);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MDCPolicy.reload();
+    }
+
+    @Benchmark
+    public Object baseline() throws Exception {
+        return scalars.proceed();
+    }
+
+    @Benchmark
+    public Object scalars() throws Exception {
+        return interceptor.methodInvocation(scalars);
+    }
+
+    @Benchmark
+    public Object trackingId() throws Exception {
+        trackingId.getParameters()[0] = null;
+        return interceptor.methodInvocation(trackingId);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.MDC;
+
+/**
+ * Cost of applying the parameter setters, with a polluted type profile
+ * <p>
+ * Before measuring, setters for every method in {@link BenchmarkTarget} are
+ * called, so the shared call sites have seen many different setters (like
+ * they would with hundreds of beans). Then the setters for one method are
+ * measured:
+ * <ul>
+ * <li>{@code legacy} - a loop over {@code Consumer<Object[]>} (see
+ * {@link LegacySetters})
+ * <li>{@code compiled} - the method handle chain from
+ * {@link MDCInterceptor#combineSetters(List)}
+ * <li>{@code handWritten} - plain {@link MDC#put(String, String)} calls
+ * </ul>
+ * There is no MDC restore here, that is measured by
+ * {@link MDCInterceptorBenchmark}.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SetterChainBenchmark {
+
+    private static final int POLLUTION_CALLS = 20_000;
+
+    @Param({"1", "5", "10"})
+    public int parameters;
+
+    @Param({"true", "false"})
+    public boolean polluted;
+
+    private Consumer<Object[]>[] legacy;
+    private MethodHandle compiled;
+    private Object[] params;
+
+    @Setup
+    public void setup() throws Exception {
+        MDC.clear();
+        if (polluted)
+            pollute();
+        Method method = BenchmarkTarget.class.getDeclaredMethod("scalar" + parameters, stringParameters(parameters));
+        legacy = legacySetters(method);
+        compiled = compiledSetters(method);
+        params = new Object[parameters];
+        Arrays.fill(params, "some-value");
+    }
+
+    @Benchmark
+    public Object legacy() {
+        LegacySetters.applyAll(legacy, params);
+        return params;
+    }
+
+    @Benchmark
+    public Object compiled() {
+        MDCInterceptor.applySetters(compiled, params);
+        return params;
+    }
+
+    @Benchmark
+    @SuppressWarnings("fallthrough")
+    public Object handWritten() {
+        Object[] p = params;
+        switch (parameters) {
+            case 10:
+                MDC.put("f9", String.valueOf(p[9]));
+                MDC.put("f8", String.valueOf(p[8]));
+                MDC.put("f7", String.valueOf(p[7]));
+                MDC.put("f6", String.valueOf(p[6]));
+                MDC.put("f5", String.valueOf(p[5]));
+            case 5:
+                MDC.put("f4", String.valueOf(p[4]));
+                MDC.put("f3", String.valueOf(p[3]));
+                MDC.put("f2", String.valueOf(p[2]));
+                MDC.put("f1", String.valueOf(p[1]));
+            case 1:
+                MDC.put("f0", String.valueOf(p[0]));
+                break;
+            default:
+                throw new IllegalStateException("Unsupported parameter count: " + parameters);
+        }
+        return p;
+    }
+
+    /**
+     * Run the setters of all the benchmark targets through both the legacy
+     * and the compiled path
+     *
+     * @throws Exception if the setup fails
+     */
+    private static void pollute() throws Exception {
+        for (Method method : BenchmarkTarget.class.getDeclaredMethods()) {
+            Consumer<Object[]>[] legacy = legacySetters(method);
+            MethodHandle compiled = compiledSetters(method);
+            Object[] values = new Object[method.getParameterCount()];
+            for (int i = 0 ; i < POLLUTION_CALLS ; i++) {
+                Class<?>[] types = method.getParameterTypes();
+                for (int j = 0 ; j < types.length ; j++) {
+                    values[j] = value(types[j]);
+                }
+                LegacySetters.applyAll(legacy, values);
+                MDCInterceptor.applySetters(compiled, values);
+            }
+        }
+        MDC.clear();
+    }
+
+    private static Object value(Class<?> type) {
+        if (type == int[].class)
+            return MDCInterceptorBenchmark.value("primitiveArray");
+        if (type == int[][].class)
+            return MDCInterceptorBenchmark.value("nestedArray");
+        return null; // null exercises @GenerateTrackingId too
+    }
+
+    private static Class<?>[] stringParameters(int count) {
+        Class<?>[] types = new Class<?>[count];
+        Arrays.fill(types, String.class);
+        return types;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<Object[]>[] legacySetters(Method method) {
+        List<Consumer<Object[]>> setters = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0 ; i < parameters.length ; i++) {
+            GenerateTrackingId trackingId = parameters[i].getAnnotation(GenerateTrackingId.class);
+            if (trackingId != null)
+                setters.add(LegacySetters.makeTrackingIdSetter(i, trackingId.value().resolve()));
+            LogAs mdc = parameters[i].getAnnotation(LogAs.class);
+            if (mdc != null)
+                setters.add(LegacySetters.makeMDCSetter(i, mdc.value(), mdc.includeNull(), parameters[i].getType()));
+        }
+        return setters.toArray(Consumer[]::new);
+    }
+
+    private static MethodHandle compiledSetters(Method method) {
+        List<MethodHandle> setters = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0 ; i < parameters.length ; i++) {
+            GenerateTrackingId trackingId = parameters[i].getAnnotation(GenerateTrackingId.class);
+            if (trackingId != null)
+                setters.add(MDCInterceptor.trackingIdSetter(i, trackingId.value().resolve()));
+            LogAs mdc = parameters[i].getAnnotation(LogAs.class);
+            if (mdc != null)
+                setters.add(MDCInterceptor.mdcSetter(i, mdc.value(), mdc.includeNull(), parameters[i].getType()));
+        }
+        return MDCInterceptor.combineSetters(setters);
+    }
+}
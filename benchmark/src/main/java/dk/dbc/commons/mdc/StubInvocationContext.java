@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import jakarta.interceptor.InvocationContext;
+
+/**
+ * Minimal {@link InvocationContext} for driving the interceptor outside of a
+ * container
+ * <p>
+ * The parameter array is handed out as is (no copy), like the containers do,
+ * and {@link #proceed()} does nothing but return the configured result.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class StubInvocationContext implements InvocationContext {
+
+    private final Object target;
+    private final Method method;
+    private Object[] parameters;
+    private final Object result;
+    private final Map<String, Object> contextData = new HashMap<>();
+
+    public StubInvocationContext(Object target, Method method, Object[] parameters, Object result) {
+        this.target = target;
+        this.method = method;
+        this.parameters = parameters;
+        this.result = result;
+    }
+
+    @Override
+    public Object getTarget() {
+        return target;
+    }
+
+    @Override
+    public Object getTimer() {
+        return null;
+    }
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public Constructor<?> getConstructor() {
+        return null;
+    }
+
+    @Override
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public void setParameters(Object[] parameters) {
+        this.parameters = parameters;
+    }
+
+    @Override
+    public Map<String, Object> getContextData() {
+        return contextData;
+    }
+
+    @Override
+    public Object proceed() throws Exception {
+        return result;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Retained heap per live thread, with and without an intercepted call on the
+ * stack
+ * <p>
+ * Not a JMH benchmark (JMH measures time), run as:
+ * <pre>
+ * java -cp target/benchmarks.jar dk.dbc.commons.mdc.ThreadFootprint [threads] [full|delta] [empty|populated]
+ * </pre>
+ * On Java 21+ virtual threads are used (default 100000 threads), otherwise
+ * platform threads (default 2000).
+ * <p>
+ * Three rounds are run, each with all threads parked at the same time:
+ * <ul>
+ * <li>baseline - the threads have their (upstream) MDC</li>
+ * <li>inside - the threads are parked inside an intercepted method</li>
+ * <li>after - the threads have returned from an intercepted method</li>
+ * </ul>
+ * and the heap used (after gc) beyond the baseline is reported per thread.
+ * <p>
+ * The intercepted method has a lazy value and generates a counter tracking
+ * id, and inside it the MDC is captured, the lazy values are rendered and a
+ * log event is encoded by {@link MDCJsonEncoder}, so the per thread state of
+ * those is included.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class ThreadFootprint {
+
+    private static final Object[] PARAMETERS = {"v0", "v1", "v2", "v3", "v4", new long[] {1, 2, 3}, null};
+
+    public static void main(String[] args) throws Exception {
+        Function<Runnable, Thread> virtual = virtualThreadFactory();
+        Function<Runnable, Thread> factory = virtual != null ? virtual : Thread::new;
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : virtual != null ? 100_000 : 2_000;
+        String restore = args.length > 1 ? args[1] : "full";
+        String mdc = args.length > 2 ? args[2] : "populated";
+        System.setProperty(MDCInterceptor.RESTORE_MODE_PROPERTY, restore);
+        Method method = MDCInterceptorBenchmark.method("footprint");
+        MDCInterceptor interceptor = new MDCInterceptor();
+        MDCJsonEncoder encoder = new MDCJsonEncoder();
+        encoder.setContext((LoggerContext) LoggerFactory.getILoggerFactory());
+        encoder.start();
+
+        System.out.printf(Locale.ROOT, "%d %s threads, restore=%s, mdc=%s%n",
+                          threads, virtual != null ? "virtual" : "platform", restore, mdc);
+
+        long baseline = round(factory, threads, mdc, park -> park.run());
+        long inside = round(factory, threads, mdc, park -> call(interceptor, method, () -> {
+                        work(encoder);
+                        park.run();
+                    }));
+        long after = round(factory, threads, mdc, park -> {
+                       call(interceptor, method, () -> work(encoder));
+                       park.run();
+                   });
+        System.out.printf(Locale.ROOT, "baseline: %,d bytes/thread%n", baseline / threads);
+        System.out.printf(Locale.ROOT, "inside:   %+,d bytes/thread%n", ( inside - baseline ) / threads);
+        System.out.printf(Locale.ROOT, "after:    %+,d bytes/thread%n", ( after - baseline ) / threads);
+    }
+
+    /**
+     * Start threads, that set up the MDC and run the body, and measure the
+     * heap when all of them are parked
+     *
+     * @return heap used, relative to before the threads were started
+     */
+    private static long round(Function<Runnable, Thread> factory, int count, String mdc, Consumer<Runnable> body) throws InterruptedException {
+        long before = usedHeap();
+        CountDownLatch parked = new CountDownLatch(count);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable park = () -> {
+            parked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Thread> threads = new ArrayList<>(count);
+        for (int i = 0 ; i < count ; i++) {
+            Thread thread = factory.apply(() -> {
+                MDCInterceptorBenchmark.populateMdc(mdc);
+                MDC.put("trackingId", "a8a1d2e2-42b4-4f0f-8fe1-d1a3b0f0a0b1");
+                body.accept(park);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        parked.await();
+        long used = usedHeap() - before;
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return used;
+    }
+
+    private static void call(MDCInterceptor interceptor, Method method, Runnable body) {
+        try {
+            interceptor.methodInvocation(new StubInvocationContext(null, method, PARAMETERS, null) {
+                @Override
+                public Object proceed() {
+                    body.run();
+                    return null;
+                }
+            });
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * What an intercepted method typically does, that uses per thread state
+     *
+     * @param encoder the json encoder
+     */
+    private static void work(MDCJsonEncoder encoder) {
+        MDCSnapshot.capture();
+        LazyMDC.materialize();
+        LoggingEvent event = new LoggingEvent();
+        event.setLoggerName(ThreadFootprint.class.getName());
+        event.setThreadName(Thread.currentThread().getName());
+        event.setLevel(Level.INFO);
+        event.setTimeStamp(System.currentTimeMillis());
+        event.setMessage("footprint");
+        @SuppressWarnings("unchecked")
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        event.setMDCPropertyMap(context);
+        encoder.encode(event);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0 ; i < 3 ; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Thread.ofVirtual()::unstarted on Java 21+
+     *
+     * @return factory or null if there are no virtual threads
+     */
+    private static Function<Runnable, Thread> virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+            return runnable -> {
+                try {
+                    return (Thread) unstarted.invoke(builder, runnable);
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
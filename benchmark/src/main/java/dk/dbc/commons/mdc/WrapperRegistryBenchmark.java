@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jakarta.interceptor.InvocationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of looking up the invoker for a method
+ * <p>
+ * Compares the {@link HashMap} the interceptor used to have, with the
+ * {@link WrapperRegistry}, both for the same {@link Method} instance as the
+ * one registered and for an equal copy of it (as a container might hand
+ * out).
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class WrapperRegistryBenchmark {
+
+    private static final Invoker INVOKER = InvocationContext::proceed;
+    private static final Invoker DEFAULT = InvocationContext::proceed;
+
+    @Param({"1", "100", "1000"})
+    public int size;
+
+    private HashMap<Method, Invoker> hashMap;
+    private WrapperRegistry registry;
+    private Method registered;
+    private Method copy;
+
+    @Setup
+    public void setup() throws Exception {
+        List<Method> methods = methods(size);
+        hashMap = new HashMap<>();
+        methods.forEach(m -> hashMap.put(m, INVOKER));
+        registry = WrapperRegistry.EMPTY.with(hashMap);
+        registered = methods.get(methods.size() / 2);
+        copy = registered.getDeclaringClass().getDeclaredMethod(registered.getName(), registered.getParameterTypes());
+        if (copy == registered)
+            throw new IllegalStateException("Expected a copy of the method");
+    }
+
+    @Benchmark
+    public Invoker hashMapSameInstance() {
+        return hashMap.getOrDefault(registered, DEFAULT);
+    }
+
+    @Benchmark
+    public Invoker hashMapEqualCopy() {
+        return hashMap.getOrDefault(copy, DEFAULT);
+    }
+
+    @Benchmark
+    public Invoker registrySameInstance() {
+        return registry.get(registered, DEFAULT);
+    }
+
+    @Benchmark
+    public Invoker registryEqualCopy() {
+        return registry.get(copy, DEFAULT);
+    }
+
+    /**
+     * Collect a number of distinct methods from some JDK classes
+     *
+     * @param count how many
+     * @return list of methods
+     */
+    private static List<Method> methods(int count) {
+        ArrayList<Method> methods = new ArrayList<>(count);
+        for (Class<?> clazz : new Class<?>[] {String.class, StringBuilder.class, Character.class, Integer.class,
+                                              Long.class, Math.class, ArrayList.class, HashMap.class, Thread.class,
+                                              Class.class, java.util.Arrays.class, java.util.Collections.class}) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (methods.size() == count)
+                    return methods;
+                methods.add(method);
+            }
+        }
+        throw new IllegalStateException("Not enough methods for: " + count);
+    }
+}
@@ -0,0 +1,99 @@
+package dk.dbc.example.load;
+
+/**
+ * A log-linear latency histogram, for one thread
+ * <p>
+ * Every power of 2 is split into {@value #SUB_BUCKETS} buckets, so a
+ * percentile is reported with at most ~3% error, in a fixed 16K table
+ * regardless of the range.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 << SUB_BUCKET_BITS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Record one call
+     *
+     * @param nanos duration
+     */
+    void record(long nanos) {
+        counts[index(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    /**
+     * Add the recordings from another histogram
+     *
+     * @param other histogram to merge into this
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0 ; i < counts.length ; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return count;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Find a percentile
+     *
+     * @param percent 0-100
+     * @return the upper bound of the bucket containing the percentile (in
+     *         nanoseconds)
+     */
+    long percentile(double percent) {
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(count * percent / 100.0);
+        if (rank < 1)
+            rank = 1;
+        long seen = 0;
+        for (int i = 0 ; i < counts.length ; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    static int index(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) ( nanos >>> shift ) & ( SUB_BUCKETS - 1 );
+        return ( ( shift + 1 ) << SUB_BUCKET_BITS ) + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = ( index >>> SUB_BUCKET_BITS ) - 1;
+        long lower = (long) ( SUB_BUCKETS + ( index & ( SUB_BUCKETS - 1 ) ) ) << shift;
+        return lower + ( 1L << shift ) - 1;
+    }
+}
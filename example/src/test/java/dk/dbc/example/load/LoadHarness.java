@@ -0,0 +1,295 @@
+package dk.dbc.example.load;
+
+import dk.dbc.commons.mdc.MDCPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
+import org.slf4j.MDC;
+
+/**
+ * Local load test of the MDC interceptor
+ * <p>
+ * Boots the ping services in Weld SE (no application server, no network),
+ * and drives concurrent calls through them, at each number of callers:
+ * <ul>
+ * <li>{@code plain} - {@link PlainPingService}, not intercepted
+ * <li>{@code dispatch} - {@link MinimalPingService} with the policy
+ * {@code OFF}, the interceptor only dispatches to the method
+ * <li>{@code snapshot} - {@link MinimalPingService} with the policy
+ * {@code FULL}, dispatch and the MDC snapshot/restore; the callers already
+ * have the {@code sleep} value in their MDC, so it isn't written
+ * <li>{@code intercepted} - {@link PingService} with the policy {@code FULL},
+ * the same annotations as {@link dk.dbc.example.Ping}
+ * </ul>
+ * The overhead of the interceptor is split into those steps by the difference
+ * between the mean latencies.
+ * <p>
+ * Calls are timed in batches of {@value #BATCH} (1 when sleeping), so the
+ * mean and the throughput don't include a clock read per call. The
+ * percentiles are of the first call of each batch, which is timed on its own.
+ * <p>
+ * Arguments are {@code name=value}:
+ * <ul>
+ * <li>{@code callers} - comma separated list of concurrent callers (default
+ * {@code 1,2,4,8,16,32,64,128,256})
+ * <li>{@code seconds} - measure time per run (default 5)
+ * <li>{@code warmup} - warmup time per run (default 2)
+ * <li>{@code mdc} - number of upstream values in each callers MDC (default 8)
+ * <li>{@code sleep} - milliseconds each call sleeps (default 0)
+ * <li>{@code generate} - let the interceptor generate the tracking id
+ * (default false)
+ * </ul>
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class LoadHarness {
+
+    private static final int WARMUP = 0;
+    private static final int MEASURE = 1;
+    private static final int STOPPED = 2;
+    private static final int BATCH = 64;
+
+    @FunctionalInterface
+    private interface Call {
+
+        String ping(int sleep, String trackingId);
+    }
+
+    private enum Variant {
+        PLAIN, DISPATCH, SNAPSHOT, INTERCEPTED;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final int[] callers;
+    private final int seconds;
+    private final int warmup;
+    private final int mdc;
+    private final int sleep;
+    private final boolean generate;
+
+    private volatile int phase;
+    private long measuredNanos;
+
+    /**
+     * Calls of one or more callers
+     */
+    private static final class Result {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long calls;
+        private long nanos;
+
+        private void add(Result other) {
+            latencies.add(other.latencies);
+            calls += other.calls;
+            nanos += other.nanos;
+        }
+
+        private double mean() {
+            return calls == 0 ? 0 : (double) nanos / calls;
+        }
+    }
+
+    private LoadHarness(String[] args) {
+        String callersArg = "1,2,4,8,16,32,64,128,256";
+        int secondsArg = 5;
+        int warmupArg = 2;
+        int mdcArg = 8;
+        int sleepArg = 0;
+        boolean generateArg = false;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq == -1)
+                throw new IllegalArgumentException("Expected name=value, got: " + arg);
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(0, eq)) {
+                case "callers":
+                    callersArg = value;
+                    break;
+                case "seconds":
+                    secondsArg = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    warmupArg = Integer.parseInt(value);
+                    break;
+                case "mdc":
+                    mdcArg = Integer.parseInt(value);
+                    break;
+                case "sleep":
+                    sleepArg = Integer.parseInt(value);
+                    break;
+                case "generate":
+                    generateArg = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        this.callers = parseCallers(callersArg);
+        this.seconds = secondsArg;
+        this.warmup = warmupArg;
+        this.mdc = mdcArg;
+        this.sleep = sleepArg;
+        this.generate = generateArg;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness(args);
+        try (WeldContainer container = new Weld().initialize()) {
+            harness.run(container.select(PlainPingService.class).get()::ping,
+                        container.select(MinimalPingService.class).get()::ping,
+                        container.select(PingService.class).get()::ping);
+        } finally {
+            MDCPolicy.reload();
+        }
+    }
+
+    private void run(Call plain, Call minimal, Call intercepted) throws InterruptedException {
+        System.out.printf(Locale.ROOT, "java %s, %d cpus, mdc=%d, sleep=%dms, generate=%s, %ds (+%ds warmup) per run%n",
+                          System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                          mdc, sleep, generate, seconds, warmup);
+        System.out.printf(Locale.ROOT, "%7s  %-11s  %12s  %9s  %9s  %9s  %9s  (ns)%n",
+                          "callers", "variant", "ops/s", "mean", "p50", "p99", "p99.9");
+        for (int n : callers) {
+            double[] means = new double[Variant.values().length];
+            for (Variant variant : Variant.values()) {
+                Call call;
+                switch (variant) {
+                    case PLAIN:
+                        call = plain;
+                        MDCPolicy.set(MDCPolicy.Mode.FULL);
+                        break;
+                    case DISPATCH:
+                        call = minimal;
+                        MDCPolicy.set(MDCPolicy.Mode.OFF);
+                        break;
+                    case SNAPSHOT:
+                        call = minimal;
+                        MDCPolicy.set(MDCPolicy.Mode.FULL);
+                        break;
+                    default:
+                        call = intercepted;
+                        MDCPolicy.set(MDCPolicy.Mode.FULL);
+                        break;
+                }
+                Result result = measure(call, n, variant == Variant.SNAPSHOT);
+                double elapsed = measuredNanos / 1e9;
+                LatencyHistogram latencies = result.latencies;
+                means[variant.ordinal()] = result.mean();
+                System.out.printf(Locale.ROOT, "%7d  %-11s  %,12.0f  %9.0f  %9d  %9d  %9d%n",
+                                  n, variant.label(), result.calls / elapsed, result.mean(),
+                                  latencies.percentile(50), latencies.percentile(99), latencies.percentile(99.9));
+            }
+            printBreakdown(n, means);
+        }
+    }
+
+    /**
+     * Split the interceptor overhead (intercepted - plain) into its steps
+     *
+     * @param n     number of callers
+     * @param means mean latency per variant
+     */
+    private static void printBreakdown(int n, double[] means) {
+        double overhead = means[Variant.INTERCEPTED.ordinal()] - means[Variant.PLAIN.ordinal()];
+        double dispatch = means[Variant.DISPATCH.ordinal()] - means[Variant.PLAIN.ordinal()];
+        double snapshot = means[Variant.SNAPSHOT.ordinal()] - means[Variant.DISPATCH.ordinal()];
+        double values = means[Variant.INTERCEPTED.ordinal()] - means[Variant.SNAPSHOT.ordinal()];
+        System.out.printf(Locale.ROOT, "%7d  overhead %.0fns/call: dispatch %.0fns (%s), snapshot/restore %.0fns (%s), values %.0fns (%s)%n",
+                          n, overhead,
+                          dispatch, share(dispatch, overhead),
+                          snapshot, share(snapshot, overhead),
+                          values, share(values, overhead));
+    }
+
+    private static String share(double part, double whole) {
+        if (whole <= 0)
+            return "-";
+        return String.format(Locale.ROOT, "%.0f%%", 100 * part / whole);
+    }
+
+    /**
+     * Run one variant, with a number of concurrent callers
+     *
+     * @param call       what to call
+     * @param n          number of callers
+     * @param seedSleep  if the callers should have the sleep value in their
+     *                   MDC already
+     * @return the calls made after the warmup
+     * @throws InterruptedException if interrupted
+     */
+    private Result measure(Call call, int n, boolean seedSleep) throws InterruptedException {
+        Result[] results = new Result[n];
+        List<Thread> threads = new ArrayList<>(n);
+        CountDownLatch ready = new CountDownLatch(n);
+        int batch = sleep > 0 ? 1 : BATCH;
+        phase = WARMUP;
+        for (int i = 0 ; i < n ; i++) {
+            int caller = i;
+            Result result = new Result();
+            results[i] = result;
+            Thread thread = new Thread(() -> {
+                for (int j = 0 ; j < mdc ; j++) {
+                    MDC.put("upstream" + j, "value-" + j);
+                }
+                if (seedSleep)
+                    MDC.put("sleep", String.valueOf(sleep));
+                String trackingId = generate ? null : "load-" + caller;
+                ready.countDown();
+                try {
+                    int current;
+                    while (( current = phase ) != STOPPED) {
+                        long before = System.nanoTime();
+                        call.ping(sleep, trackingId);
+                        long first = System.nanoTime();
+                        for (int j = 1 ; j < batch ; j++) {
+                            call.ping(sleep, trackingId);
+                        }
+                        long after = System.nanoTime();
+                        if (current == MEASURE) {
+                            result.latencies.record(first - before);
+                            result.calls += batch;
+                            result.nanos += after - before;
+                        }
+                    }
+                } finally {
+                    MDC.clear();
+                }
+            }, "caller-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        ready.await();
+        Thread.sleep(warmup * 1000L);
+        long start = System.nanoTime();
+        phase = MEASURE;
+        Thread.sleep(seconds * 1000L);
+        phase = STOPPED;
+        measuredNanos = System.nanoTime() - start;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Result total = new Result();
+        for (Result result : results) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    private static int[] parseCallers(String value) {
+        String[] parts = value.split(",");
+        int[] callers = new int[parts.length];
+        for (int i = 0 ; i < parts.length ; i++) {
+            callers[i] = Integer.parseInt(parts[i].trim());
+            if (callers[i] < 1)
+                throw new IllegalArgumentException("callers should be positive, got: " + parts[i]);
+        }
+        return callers;
+    }
+}
@@ -0,0 +1,27 @@
+package dk.dbc.example.load;
+
+import dk.dbc.commons.mdc.LogAs;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PingService} with a single MDC field and no tracking id
+ * <p>
+ * With the policy {@code FULL} a call costs the interceptor dispatch and one
+ * MDC snapshot/restore; with the policy {@code OFF} it costs only the
+ * dispatch.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@ApplicationScoped
+public class MinimalPingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MinimalPingService.class);
+
+    public String ping(@LogAs("sleep") int sleep,
+                       String trackingId) {
+        log.debug("Ping?");
+        return Work.sleep(sleep);
+    }
+}
@@ -0,0 +1,25 @@
+package dk.dbc.example.load;
+
+import dk.dbc.commons.mdc.GenerateTrackingId;
+import dk.dbc.commons.mdc.LogAs;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The business part of {@link dk.dbc.example.Ping}, with the same MDC
+ * annotations
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@ApplicationScoped
+public class PingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PingService.class);
+
+    public String ping(@LogAs("sleep") int sleep,
+                       @LogAs("trackingId") @GenerateTrackingId String trackingId) {
+        log.debug("Ping?");
+        return Work.sleep(sleep);
+    }
+}
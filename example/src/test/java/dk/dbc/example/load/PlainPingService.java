@@ -0,0 +1,22 @@
+package dk.dbc.example.load;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link PingService} without any MDC annotations - the baseline
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@ApplicationScoped
+public class PlainPingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PlainPingService.class);
+
+    public String ping(int sleep,
+                       String trackingId) {
+        log.debug("Ping?");
+        return Work.sleep(sleep);
+    }
+}
@@ -0,0 +1,31 @@
+package dk.dbc.example.load;
+
+/**
+ * The body shared by the ping services
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class Work {
+
+    private static final String PONG = "pong!";
+
+    private Work() {
+    }
+
+    /**
+     * Sleep like {@link dk.dbc.example.Ping} does
+     *
+     * @param sleep milliseconds, nothing if not positive
+     * @return pong
+     */
+    static String sleep(int sleep) {
+        if (sleep > 0) {
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return PONG;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Formatter for arrays, collections and maps, that stops early
+ * <p>
+ * Output is like {@link java.util.Arrays#deepToString(java.lang.Object[])},
+ * {@link java.util.AbstractCollection#toString()} and
+ * {@link java.util.AbstractMap#toString()}, except:
+ * <ul>
+ * <li>containers with more than {@code maxElements} elements end with
+ * {@code , …(+N more)]}
+ * <li>output with elements beyond {@code maxLength} characters is cut at
+ * {@code maxLength}, and ends with {@code …(+N more)}, where N is the number
+ * of top level elements (or characters for non containers) not (fully)
+ * included
+ * </ul>
+ * The text is built in a per thread buffer, and never exceeds the limits
+ * (except for the {@code toString()} of a single element), only the final
+ * string is allocated.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class BoundedFormatter {
+
+    /**
+     * System property with the default for {@link LogAs#maxElements()}
+     */
+    static final String MAX_ELEMENTS_PROPERTY = "dk.dbc.commons.mdc.maxElements";
+    /**
+     * System property with the default for {@link LogAs#maxLength()}
+     */
+    static final String MAX_LENGTH_PROPERTY = "dk.dbc.commons.mdc.maxLength";
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int MAX_DEPTH = 16;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private final int maxElements;
+    private final int maxLength;
+
+    BoundedFormatter(int maxElements, int maxLength) {
+        this.maxElements = maxElements;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Resolve a limit from an annotation
+     *
+     * @param annotated value from the annotation (negative means use
+     *                  default)
+     * @param property  system property with the default
+     * @return limit, {@link #UNLIMITED} if neither is set
+     */
+    static int limit(int annotated, String property) {
+        if (annotated >= 0)
+            return annotated;
+        String value = System.getProperty(property);
+        if (value == null || value.isEmpty())
+            return UNLIMITED;
+        int limit = Integer.parseInt(value);
+        return limit < 0 ? UNLIMITED : limit;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    boolean isUnlimited() {
+        return maxElements == UNLIMITED && maxLength == UNLIMITED;
+    }
+
+    /**
+     * Format a value
+     *
+     * @param value any value (not null)
+     * @return bounded string representation
+     */
+    String format(Object value) {
+        // A cached buffer per virtual thread would cost more than it saves
+        Buffer buffer = Threads.isVirtual() ? new Buffer() : BUFFER.get();
+        StringBuilder sb = buffer.sb;
+        try {
+            int more;
+            if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                more = length - appendArray(buffer, value, length);
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                more = collection.size() - appendIterator(buffer, collection, collection.iterator(), collection.size());
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                more = map.size() - appendMap(buffer, map);
+            } else {
+                CharSequence text = value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+                if (text.length() <= maxLength)
+                    return text.toString();
+                sb.append(text, 0, maxLength);
+                more = text.length() - maxLength;
+                buffer.cut = true;
+            }
+            if (buffer.cut) {
+                sb.setLength(maxLength);
+                sb.append("…(+").append(more).append(" more)");
+            }
+            return sb.toString();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Append an array
+     *
+     * @return number of elements appended
+     */
+    private int appendArray(Buffer buffer, Object array, int length) {
+        if (!buffer.enter(array))
+            return length;
+        StringBuilder sb = buffer.sb;
+        char kind = kind(array);
+        int shown = Math.min(length, maxElements);
+        sb.append('[');
+        for (int i = 0 ; i < shown ; i++) {
+            if (i > 0)
+                sb.append(", ");
+            if (kind == 'L')
+                appendValue(buffer, ( (Object[]) array )[i]);
+            else
+                appendPrimitive(sb, kind, array, i);
+            if (sb.length() > maxLength) {
+                buffer.leave();
+                buffer.cut = true;
+                return i;
+            }
+        }
+        endContainer(sb, length - shown, ']');
+        buffer.leave();
+        return shown;
+    }
+
+    /**
+     * Append a collection
+     *
+     * @return number of elements appended
+     */
+    private int appendIterator(Buffer buffer, Object container, Iterator<?> iterator, int size) {
+        if (!buffer.enter(container))
+            return size;
+        StringBuilder sb = buffer.sb;
+        int shown = Math.min(size, maxElements);
+        sb.append('[');
+        for (int i = 0 ; i < shown && iterator.hasNext() ; i++) {
+            if (i > 0)
+                sb.append(", ");
+            appendValue(buffer, iterator.next());
+            if (sb.length() > maxLength) {
+                buffer.leave();
+                buffer.cut = true;
+                return i;
+            }
+        }
+        endContainer(sb, size - shown, ']');
+        buffer.leave();
+        return shown;
+    }
+
+    /**
+     * Append a map
+     *
+     * @return number of entries appended
+     */
+    private int appendMap(Buffer buffer, Map<?, ?> map) {
+        int size = map.size();
+        if (!buffer.enter(map))
+            return size;
+        StringBuilder sb = buffer.sb;
+        int shown = Math.min(size, maxElements);
+        Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+        sb.append('{');
+        for (int i = 0 ; i < shown && iterator.hasNext() ; i++) {
+            if (i > 0)
+                sb.append(", ");
+            Map.Entry<?, ?> entry = iterator.next();
+            appendValue(buffer, entry.getKey());
+            sb.append('=');
+            appendValue(buffer, entry.getValue());
+            if (sb.length() > maxLength) {
+                buffer.leave();
+                buffer.cut = true;
+                return i;
+            }
+        }
+        endContainer(sb, size - shown, '}');
+        buffer.leave();
+        return shown;
+    }
+
+    private void appendValue(Buffer buffer, Object value) {
+        StringBuilder sb = buffer.sb;
+        if (value == null) {
+            sb.append("null");
+        } else if (value.getClass().isArray()) {
+            appendArray(buffer, value, Array.getLength(value));
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            appendIterator(buffer, collection, collection.iterator(), collection.size());
+        } else if (value instanceof Map) {
+            appendMap(buffer, (Map<?, ?>) value);
+        } else {
+            CharSequence text = value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+            // One more than room, so the caller can see that the limit is exceeded
+            int room = maxLength - sb.length() + 1;
+            sb.append(text, 0, Math.max(0, Math.min(text.length(), room)));
+        }
+    }
+
+    private static void endContainer(StringBuilder sb, int more, char end) {
+        if (more > 0) {
+            if (sb.charAt(sb.length() - 1) != '[' && sb.charAt(sb.length() - 1) != '{')
+                sb.append(", ");
+            sb.append("…(+").append(more).append(" more)");
+        }
+        sb.append(end);
+    }
+
+    private static char kind(Object array) {
+        Class<?> component = array.getClass().getComponentType();
+        if (!component.isPrimitive())
+            return 'L';
+        if (component == boolean.class)
+            return 'Z';
+        if (component == long.class)
+            return 'J';
+        if (component == int.class)
+            return 'I';
+        if (component == short.class)
+            return 'S';
+        if (component == byte.class)
+            return 'B';
+        if (component == char.class)
+            return 'C';
+        if (component == double.class)
+            return 'D';
+        return 'F';
+    }
+
+    private static void appendPrimitive(StringBuilder sb, char kind, Object array, int i) {
+        switch (kind) {
+            case 'B':
+                sb.append(( (byte[]) array )[i]);
+                break;
+            case 'C':
+                sb.append(( (char[]) array )[i]);
+                break;
+            case 'D':
+                sb.append(( (double[]) array )[i]);
+                break;
+            case 'F':
+                sb.append(( (float[]) array )[i]);
+                break;
+            case 'I':
+                sb.append(( (int[]) array )[i]);
+                break;
+            case 'J':
+                sb.append(( (long[]) array )[i]);
+                break;
+            case 'S':
+                sb.append(( (short[]) array )[i]);
+                break;
+            case 'Z':
+                sb.append(( (boolean[]) array )[i]);
+                break;
+            default:
+                throw new IllegalStateException("Array kind: " + kind + " is not (yet) supported");
+        }
+    }
+
+    /**
+     * Per thread state: the text being built, and the containers being
+     * formatted (for detecting self references)
+     */
+    private static final class Buffer {
+
+        private StringBuilder sb = new StringBuilder(256);
+        private final Object[] path = new Object[MAX_DEPTH];
+        private int depth;
+        private boolean cut;
+
+        /**
+         * Start formatting a container
+         *
+         * @param container the container
+         * @return false if the container is already being formatted (or
+         *         nesting is too deep), then {@code [...]} has been appended
+         */
+        private boolean enter(Object container) {
+            for (int i = 0 ; i < depth ; i++) {
+                if (path[i] == container) {
+                    sb.append("[...]");
+                    return false;
+                }
+            }
+            if (depth == MAX_DEPTH) {
+                sb.append("[...]");
+                return false;
+            }
+            path[depth++] = container;
+            return true;
+        }
+
+        private void leave() {
+            path[--depth] = null;
+        }
+
+        private void reset() {
+            cut = false;
+            while (depth > 0) {
+                leave();
+            }
+            if (sb.capacity() > MAX_RETAINED_CAPACITY)
+                sb = new StringBuilder(256);
+            else
+                sb.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+
+/**
+ * The line logged by {@link LogExit}, when a method returns or throws
+ * <p>
+ * Everything (messages, how the return value is converted) is resolved when
+ * the method is wrapped. A call only checks if the level is enabled, and
+ * only then is the return value converted and the MDC fields set. The
+ * fields are put back after the line is logged.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class ExitLine {
+
+    static final String ASYNC = "@LogExit cannot be used upon asynchronous methods";
+    static final String NO_RESULT = "@LogExit result cannot be used upon methods without a return value";
+
+    private final Logger logger;
+    private final Level level;
+    private final Level exceptionLevel;
+    private final String returned;
+    private final String failed;
+    private final String resultField;
+    private final MethodHandle resultSetter;
+    private final String exceptionField;
+    private final String exceptionMessageField;
+
+    /**
+     * Make an exit line
+     *
+     * @param logger                where to log
+     * @param level                 level when the method returns
+     * @param exceptionLevel        level when the method throws
+     * @param returned              message when the method returns
+     * @param failed                message when the method throws
+     * @param resultField           MDC field for the return value or null
+     * @param resultSetter          handle of type {@code (Object[])void},
+     *                              that sets the return value (element 0) in
+     *                              the result field or null
+     * @param exceptionField        MDC field for the exception class name or
+     *                              null
+     * @param exceptionMessageField MDC field for the exception message or
+     *                              null
+     */
+    ExitLine(Logger logger, Level level, Level exceptionLevel, String returned, String failed,
+             String resultField, MethodHandle resultSetter, String exceptionField, String exceptionMessageField) {
+        this.logger = logger;
+        this.level = level;
+        this.exceptionLevel = exceptionLevel;
+        this.returned = returned;
+        this.failed = failed;
+        this.resultField = resultField;
+        this.resultSetter = resultSetter;
+        this.exceptionField = exceptionField;
+        this.exceptionMessageField = exceptionMessageField;
+    }
+
+    /**
+     * Resolve the exit line of a method
+     *
+     * @param method the method
+     * @param exit   the annotation of the method
+     * @return exit line
+     * @throws IllegalArgumentException if the annotation is misused
+     */
+    static ExitLine of(Method method, LogExit exit) {
+        return of(method, exit, LoggerFactory.getLogger(method.getDeclaringClass()));
+    }
+
+    /**
+     * Resolve the exit line of a method
+     *
+     * @param method the method
+     * @param exit   the annotation of the method
+     * @param logger where to log
+     * @return exit line
+     * @throws IllegalArgumentException if the annotation is misused
+     */
+    static ExitLine of(Method method, LogExit exit, Logger logger) {
+        String resultField = field(exit.result());
+        MethodHandle resultSetter = null;
+        if (resultField != null) {
+            if (method.getReturnType() == void.class)
+                throw new IllegalArgumentException(NO_RESULT);
+            PropertyPath path = PropertyPath.of(method.getReturnType(), exit.path());
+            BoundedFormatter formatter = new BoundedFormatter(
+                    BoundedFormatter.limit(exit.maxElements(), BoundedFormatter.MAX_ELEMENTS_PROPERTY),
+                    BoundedFormatter.limit(exit.maxLength(), BoundedFormatter.MAX_LENGTH_PROPERTY));
+            resultSetter = MDCInterceptor.mdcSetter(0, resultField, exit.includeNull(), path, formatter);
+        }
+        String returned = exit.message().isEmpty() ? "Done with " + method.getName() : exit.message();
+        String failed = exit.message().isEmpty() ? "Failed " + method.getName() : exit.message();
+        return new ExitLine(logger, exit.level(), exit.exceptionLevel(),
+                            returned, failed, resultField, resultSetter, field(exit.exception()), field(exit.exceptionMessage()));
+    }
+
+    private static String field(String field) {
+        if (field.isEmpty())
+            return null;
+        String error = ParameterSpec.fieldNameError(field);
+        if (error != null)
+            throw new IllegalArgumentException(error);
+        return field;
+    }
+
+    /**
+     * The MDC fields the line can have
+     *
+     * @return field names
+     */
+    List<String> fields() {
+        List<String> fields = new ArrayList<>();
+        for (String field : new String[] {resultField, exceptionField, exceptionMessageField}) {
+            if (field != null)
+                fields.add(field);
+        }
+        return fields;
+    }
+
+    /**
+     * Make the call of a method, that logs the line afterwards
+     * <p>
+     * This runs inside the MDC setup, so the line has the MDC values of the
+     * method.
+     *
+     * @param proceed how to call the method
+     * @return invoker
+     */
+    Invoker wrap(Invoker proceed) {
+        return (ic) -> {
+            Object result;
+            try {
+                result = proceed.call(ic);
+            } catch (Exception ex) {
+                if (isEnabled(exceptionLevel))
+                    logException(ex);
+                throw ex;
+            }
+            if (isEnabled(level))
+                logResult(result);
+            return result;
+        };
+    }
+
+    private void logResult(Object result) {
+        if (resultSetter == null) {
+            log(level, returned);
+            return;
+        }
+        String oldValue = MDC.get(resultField);
+        try {
+            MDCInterceptor.applySetters(resultSetter, new Object[] {result});
+            log(level, returned);
+        } finally {
+            putBack(resultField, oldValue);
+        }
+    }
+
+    private void logException(Exception ex) {
+        String oldType = exceptionField == null ? null : MDC.get(exceptionField);
+        String oldMessage = exceptionMessageField == null ? null : MDC.get(exceptionMessageField);
+        try {
+            if (exceptionField != null)
+                MDC.put(exceptionField, ex.getClass().getName());
+            if (exceptionMessageField != null) {
+                String message = ex.getMessage();
+                if (message != null)
+                    MDC.put(exceptionMessageField, message);
+                else if (oldMessage != null)
+                    MDC.remove(exceptionMessageField); // Not the message of an outer exception
+            }
+            log(exceptionLevel, failed);
+        } finally {
+            if (exceptionMessageField != null)
+                putBack(exceptionMessageField, oldMessage);
+            if (exceptionField != null)
+                putBack(exceptionField, oldType);
+        }
+    }
+
+    private static void putBack(String field, String oldValue) {
+        if (oldValue != null)
+            MDC.put(field, oldValue);
+        else if (MDC.get(field) != null)
+            MDC.remove(field);
+    }
+
+    private boolean isEnabled(Level level) {
+        switch (level) {
+            case TRACE:
+                return logger.isTraceEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            default:
+                return logger.isErrorEnabled();
+        }
+    }
+
+    private void log(Level level, String message) {
+        switch (level) {
+            case TRACE:
+                logger.trace(message);
+                break;
+            case DEBUG:
+                logger.debug(message);
+                break;
+            case INFO:
+                logger.info(message);
+                break;
+            case WARN:
+                logger.warn(message);
+                break;
+            default:
+                logger.error(message);
+                break;
+        }
+    }
+}
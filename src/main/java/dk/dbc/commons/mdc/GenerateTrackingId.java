@@ -29,6 +29,9 @@ import java.lang.annotation.Target;
  * Annotation that applies only to String types
  * <p>
  * This will generate a UUID and use as string value if string is null or empty
+ * <p>
+ * How the value is generated can be selected per parameter, or globally
+ * through {@link TrackingIdGenerator#DEFAULT}
  *
  * @author Morten Bøgeskov (mb@dbc.dk)
  */
@@ -38,4 +41,11 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Deprecated(forRemoval = true, since = "2024 - use artifact: dk.dbc:dbc-commons-payara-helpers")
 public @interface GenerateTrackingId {
+
+    /**
+     * How to generate a tracking id
+     *
+     * @return generator strategy
+     */
+    TrackingIdGenerator value() default TrackingIdGenerator.DEFAULT;
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer for writing UTF-8 encoded JSON
+ * <p>
+ * Strings that are plain ASCII (the vast majority of log fields) are copied
+ * char by char into the backing array; only when a character needs escaping
+ * or is outside ASCII does it take the slow path.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class JsonBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Don't keep a buffer that has grown because of a huge stack trace
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /**
+     * Empty the buffer
+     *
+     * @return self
+     */
+    JsonBuffer reset() {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY)
+            buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * Append bytes as they are
+     *
+     * @param bytes already encoded content
+     */
+    void raw(byte[] bytes) {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Append a byte as it is
+     *
+     * @param b already encoded content
+     */
+    void raw(char b) {
+        ensure(1);
+        buffer.put((byte) b);
+    }
+
+    /**
+     * Append a number of exactly 3 digits
+     *
+     * @param value number between 0 and 999
+     */
+    void threeDigits(int value) {
+        ensure(3);
+        byte[] bytes = buffer.array();
+        int pos = buffer.position();
+        bytes[pos] = (byte) ( '0' + value / 100 );
+        bytes[pos + 1] = (byte) ( '0' + value / 10 % 10 );
+        bytes[pos + 2] = (byte) ( '0' + value % 10 );
+        buffer.position(pos + 3);
+    }
+
+    /**
+     * Append a string as a quoted and escaped JSON string
+     *
+     * @param s string (null is written as JSON null)
+     */
+    void string(String s) {
+        if (s == null) {
+            raw(NULL);
+            return;
+        }
+        int length = s.length();
+        ensure(length + 2);
+        byte[] bytes = buffer.array();
+        int pos = buffer.position();
+        bytes[pos++] = '"';
+        int i = 0;
+        for (; i < length ; i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\')
+                break;
+            bytes[pos++] = (byte) c;
+        }
+        buffer.position(pos);
+        if (i < length)
+            escape(s, i, length);
+        raw('"');
+    }
+
+    private void escape(String s, int i, int length) {
+        // Worst case is 6 bytes per char (an escaped control character)
+        ensure(( length - i ) * 6);
+        byte[] bytes = buffer.array();
+        int pos = buffer.position();
+        for (; i < length ; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = (byte) c;
+                        break;
+                    case '\n':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'r';
+                        break;
+                    case '\t':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 't';
+                        break;
+                    case '\b':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'b';
+                        break;
+                    case '\f':
+                        bytes[pos++] = '\\';
+                        bytes[pos++] = 'f';
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            bytes[pos++] = '\\';
+                            bytes[pos++] = 'u';
+                            bytes[pos++] = '0';
+                            bytes[pos++] = '0';
+                            bytes[pos++] = HEX[c >> 4];
+                            bytes[pos++] = HEX[c & 0xf];
+                        } else {
+                            bytes[pos++] = (byte) c;
+                        }
+                        break;
+                }
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) ( 0xc0 | c >> 6 );
+                bytes[pos++] = (byte) ( 0x80 | c & 0x3f );
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bytes[pos++] = (byte) ( 0xf0 | cp >> 18 );
+                bytes[pos++] = (byte) ( 0x80 | cp >> 12 & 0x3f );
+                bytes[pos++] = (byte) ( 0x80 | cp >> 6 & 0x3f );
+                bytes[pos++] = (byte) ( 0x80 | cp & 0x3f );
+            } else if (Character.isSurrogate(c)) {
+                bytes[pos++] = '?'; // Unpaired surrogate, like String.getBytes(UTF_8)
+            } else {
+                bytes[pos++] = (byte) ( 0xe0 | c >> 12 );
+                bytes[pos++] = (byte) ( 0x80 | c >> 6 & 0x3f );
+                bytes[pos++] = (byte) ( 0x80 | c & 0x3f );
+            }
+        }
+        buffer.position(pos);
+    }
+
+    /**
+     * The content of the buffer
+     *
+     * @return a copy of the written bytes
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes)
+            return;
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
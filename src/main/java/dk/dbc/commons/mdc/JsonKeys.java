@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The MDC field names known from the wrapped methods, as encoded JSON keys
+ * (including quotes and colon) for the {@link MDCJsonEncoder}
+ * <p>
+ * The map is replaced when fields are added, so lookups don't lock.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class JsonKeys {
+
+    private static volatile Map<String, byte[]> KEYS = Collections.emptyMap();
+
+    private JsonKeys() {
+    }
+
+    /**
+     * Encode field names
+     *
+     * @param fields MDC field names
+     */
+    static synchronized void add(Collection<String> fields) {
+        Map<String, byte[]> keys = KEYS;
+        if (keys.keySet().containsAll(fields))
+            return;
+        keys = new HashMap<>(keys);
+        JsonBuffer buffer = new JsonBuffer();
+        for (String field : fields) {
+            keys.computeIfAbsent(field, f -> encode(buffer, f));
+        }
+        KEYS = keys;
+    }
+
+    /**
+     * Lookup an encoded key
+     *
+     * @param field MDC field name
+     * @return {@code "field":} as UTF-8 or null if it isn't known
+     */
+    static byte[] get(String field) {
+        return KEYS.get(field);
+    }
+
+    /**
+     * Encode a key
+     *
+     * @param buffer where to encode it
+     * @param field  MDC field name
+     * @return {@code "field":} as UTF-8
+     */
+    static byte[] encode(JsonBuffer buffer, String field) {
+        buffer.reset();
+        buffer.string(field);
+        buffer.raw(':');
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import org.slf4j.MDC;
+
+/**
+ * MDC values, that are converted to strings only when a log event needs them
+ * <p>
+ * When a lazy {@link LogAs} value is set, a placeholder is put in the MDC
+ * and the value is pushed onto a per thread stack. When a log statement is
+ * enabled {@link LazyMDCTurboFilter} calls {@link #materialize()}, which
+ * replaces the placeholders, that are still in the MDC, with the string
+ * value.
+ * <p>
+ * Each wrapped parameter has its own placeholder instance, and the stack is
+ * processed from the top, so a value set later (lazy or not) for the same
+ * field is never overwritten by one set earlier.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class LazyMDC {
+
+    /**
+     * What is in the MDC until the value is rendered
+     */
+    static final String PLACEHOLDER = "(lazy)";
+
+    private static final ThreadLocal<LazyMDC> CURRENT = new ThreadLocal<>();
+    private static volatile boolean used;
+
+    private String[] fields = new String[8];
+    private String[] placeholders = new String[8];
+    private MethodHandle[] converters = new MethodHandle[8];
+    private Object[] values = new Object[8];
+    private String[] rendered = new String[8];
+    private final boolean virtual;
+    private int size;
+    private boolean rendering;
+
+    private LazyMDC(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * Make a distinct placeholder instance for a parameter
+     *
+     * @return new placeholder
+     */
+    @SuppressWarnings("PMD.StringInstantiation")
+    static String makePlaceholder() {
+        used = true;
+        return new String(PLACEHOLDER);
+    }
+
+    /**
+     * If any lazy values have been configured
+     *
+     * @return if materialization could be needed
+     */
+    static boolean isUsed() {
+        return used;
+    }
+
+    /**
+     * Get the stack of this thread
+     *
+     * @return lazy values of this thread
+     */
+    static LazyMDC current() {
+        LazyMDC lazy = CURRENT.get();
+        if (lazy == null) {
+            lazy = new LazyMDC(Threads.isVirtual());
+            CURRENT.set(lazy);
+        }
+        return lazy;
+    }
+
+    /**
+     * Set a lazy value
+     *
+     * @param field       name of MDC field
+     * @param placeholder the placeholder for this parameter
+     * @param converter   handle of type {@code (Object)String}
+     * @param includeNull if parameter is null should it be included as "null"?
+     * @param value       the parameter value
+     */
+    static void push(String field, String placeholder, MethodHandle converter, boolean includeNull, Object value) {
+        if (value == null) {
+            if (includeNull)
+                MDC.put(field, "null");
+            return;
+        }
+        current().add(field, placeholder, converter, value);
+        MDC.put(field, placeholder);
+    }
+
+    private void add(String field, String placeholder, MethodHandle converter, Object value) {
+        if (size == fields.length) {
+            int capacity = size * 2;
+            fields = Arrays.copyOf(fields, capacity);
+            placeholders = Arrays.copyOf(placeholders, capacity);
+            converters = Arrays.copyOf(converters, capacity);
+            values = Arrays.copyOf(values, capacity);
+            rendered = Arrays.copyOf(rendered, capacity);
+        }
+        fields[size] = field;
+        placeholders[size] = placeholder;
+        converters[size] = converter;
+        values[size] = value;
+        rendered[size] = null;
+        size++;
+    }
+
+    /**
+     * Current stack position, for {@link #release(int)}
+     *
+     * @return stack size
+     */
+    int mark() {
+        return size;
+    }
+
+    /**
+     * Drop values pushed since {@link #mark()}
+     * <p>
+     * On a virtual thread the stack is dropped from the thread, when it is
+     * empty.
+     *
+     * @param mark the stack size to return to
+     */
+    void release(int mark) {
+        while (size > mark) {
+            size--;
+            fields[size] = null;
+            placeholders[size] = null;
+            converters[size] = null;
+            values[size] = null;
+            rendered[size] = null;
+        }
+        if (size == 0 && virtual && CURRENT.get() == this)
+            CURRENT.remove();
+    }
+
+    /**
+     * Replace placeholders in the MDC of this thread with their string values
+     * <p>
+     * Values are converted at most once per push.
+     */
+    static void materialize() {
+        LazyMDC lazy = CURRENT.get();
+        if (lazy != null && lazy.size != 0 && !lazy.rendering)
+            lazy.render();
+    }
+
+    private void render() {
+        rendering = true; // toString() that logs shouldn't end up here again
+        try {
+            for (int i = size - 1 ; i >= 0 ; i--) {
+                if (MDC.get(fields[i]) == placeholders[i]) {
+                    if (rendered[i] == null)
+                        rendered[i] = convert(converters[i], values[i]);
+                    MDC.put(fields[i], rendered[i]);
+                }
+            }
+        } finally {
+            rendering = false;
+        }
+    }
+
+    private static String convert(MethodHandle converter, Object value) {
+        try {
+            return (String) converter.invokeExact(value);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
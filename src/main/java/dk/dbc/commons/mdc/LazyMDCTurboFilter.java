@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+
+/**
+ * Logback filter, that renders lazy {@link LogAs} values into the MDC, when a
+ * log statement is enabled
+ * <p>
+ * This is installed by the {@link MDCExtension} when lazy values are used,
+ * as the first turbo filter (a filter, that accepts an event, ends the
+ * chain), and removed when the last deployment, that installed it, shuts
+ * down. It will be gone if logback is reconfigured. To be safe, add it to
+ * the logback configuration, before any other turbo filter:
+ * <pre>
+ * &lt;turboFilter class="dk.dbc.commons.mdc.LazyMDCTurboFilter"/&gt;
+ * </pre>
+ * This never decides anything, it always replies
+ * {@link FilterReply#NEUTRAL}.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class LazyMDCTurboFilter extends TurboFilter {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(LazyMDCTurboFilter.class);
+
+    private static LazyMDCTurboFilter installed;
+    private static int users;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (LazyMDC.isUsed() && level != null && level.isGreaterOrEqual(logger.getEffectiveLevel()))
+            LazyMDC.materialize();
+        return FilterReply.NEUTRAL;
+    }
+
+    /**
+     * Add the filter to the logback context, if it isn't there already
+     * <p>
+     * Every call should be matched by a call to {@link #uninstall()}, when
+     * the deployment shuts down.
+     */
+    static void install() {
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        if (!( factory instanceof LoggerContext )) {
+            log.warn("Lazy @LogAs values need logback, they will be logged as: {}", LazyMDC.PLACEHOLDER);
+            return;
+        }
+        install((LoggerContext) factory);
+    }
+
+    /**
+     * Add the filter to a logback context, first in the turbo filter list
+     *
+     * @param context the logback context
+     */
+    static synchronized void install(LoggerContext context) {
+        users++;
+        synchronized (context) {
+            if (context.getTurboFilterList().stream().noneMatch(f -> f instanceof LazyMDCTurboFilter)) {
+                LazyMDCTurboFilter filter = new LazyMDCTurboFilter();
+                filter.setName("lazy-mdc");
+                filter.setContext(context);
+                filter.start();
+                context.getTurboFilterList().add(0, filter);
+                installed = filter;
+                log.info("Installed logback filter for lazy mdc values");
+            }
+        }
+    }
+
+    /**
+     * Remove the installed filter, when the last deployment, that has
+     * {@link #install() installed} it, shuts down
+     * <p>
+     * If logback is shared, the filter would otherwise keep the classloader
+     * of an undeployed copy of this library alive, and the next copy would
+     * install another one.
+     */
+    static synchronized void uninstall() {
+        if (users == 0 || --users != 0 || installed == null)
+            return;
+        LoggerContext context = (LoggerContext) installed.getContext();
+        synchronized (context) {
+            context.getTurboFilterList().remove(installed);
+        }
+        installed.stop();
+        installed = null;
+    }
+}
@@ -52,4 +52,80 @@ public @interface LogAs {
      * @return always include field
      */
     boolean includeNull() default false;
+
+    /**
+     * Log a property of the parameter instead of the parameter itself
+     * <p>
+     * Dot separated property names ie. {@code agency.id} for
+     * {@code param.getAgency().getId()}. Each name is resolved to a getter
+     * ({@code getX()}/{@code isX()}), an accessor ({@code x()}) or a public
+     * field, when the application is deployed. If any step is null, the value
+     * is null.
+     *
+     * @return property path, empty for the parameter itself
+     */
+    String path() default "";
+
+    /**
+     * Maximum number of elements of arrays, collections and maps to include
+     * <p>
+     * Negative means use the system property
+     * {@code dk.dbc.commons.mdc.maxElements}, which is unlimited if not set
+     *
+     * @return max number of elements (per container)
+     */
+    int maxElements() default -1;
+
+    /**
+     * Maximum number of characters in the value
+     * <p>
+     * Negative means use the system property
+     * {@code dk.dbc.commons.mdc.maxLength}, which is unlimited if not set
+     *
+     * @return max length of value
+     */
+    int maxLength() default -1;
+
+    /**
+     * Only convert the value to a string, when a log statement is enabled
+     * <p>
+     * Until then a placeholder is in the MDC. This needs logback, and
+     * {@link LazyMDCTurboFilter}.
+     * <p>
+     * The value is converted when it is first logged, so changes to the
+     * object after that aren't seen.
+     *
+     * @return if the conversion should be lazy
+     */
+    boolean lazy() default false;
+
+    /**
+     * Log the elements one at a time, as they're consumed
+     * <p>
+     * For {@link Iterable}, {@link java.util.Iterator} and (sequential)
+     * {@link java.util.stream.Stream} parameters. The parameter is wrapped,
+     * and when an element is taken from it, the value of the element (or the
+     * {@link #path()} of it) is put in the MDC field. Nothing is buffered or
+     * copied. Elements consumed after the method has returned are passed
+     * through, without touching the MDC.
+     * <p>
+     * The path is resolved on the element type (from the generic parameter
+     * type), and this cannot be combined with {@link #lazy()}.
+     *
+     * @return if each element should be logged when consumed
+     */
+    boolean perElement() default false;
+
+    /**
+     * Cache the string form of up to this many distinct values
+     * <p>
+     * For parameters with few distinct values (agency ids, format names),
+     * that would otherwise be converted to a new string on every call. Values
+     * are matched by {@code equals()}, and a new value may evict an old one.
+     * Enums and small integers are always converted without allocation, and
+     * don't need this. Hit/miss statistics are in {@link MDCMetrics}.
+     *
+     * @return max number of cached values, 0 for no cache
+     */
+    int cacheSize() default 0;
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.slf4j.event.Level;
+
+/**
+ * Log a line when the method returns or throws
+ * <p>
+ * The line is logged (by the logger of the declaring class) while the MDC
+ * values of the method ({@link LogAs} fields, tracking id) are still set,
+ * with the return value (or a property of it) or the exception in MDC
+ * fields. This replaces a "done with ..." log statement at the end of the
+ * method.
+ * <p>
+ * How the value is converted is resolved when the application is deployed,
+ * and nothing is done when the level of the line isn't enabled. The return
+ * value is only converted when the line is logged.
+ * <p>
+ * This cannot be used upon asynchronous methods.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@Inherited
+@Documented
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Deprecated(forRemoval = true, since = "2024 - use artifact: dk.dbc:dbc-commons-payara-helpers")
+public @interface LogExit {
+
+    /**
+     * The message of the line
+     * <p>
+     * Empty means {@code "Done with <method>"} when the method returns, and
+     * {@code "Failed <method>"} when it throws
+     *
+     * @return log message
+     */
+    String message() default "";
+
+    /**
+     * Level of the line, when the method returns
+     *
+     * @return log level
+     */
+    Level level() default Level.INFO;
+
+    /**
+     * Level of the line, when the method throws
+     *
+     * @return log level
+     */
+    Level exceptionLevel() default Level.WARN;
+
+    /**
+     * Name of the MDC field with the return value
+     *
+     * @return name of MDC field, empty for not logging the return value
+     */
+    String result() default "";
+
+    /**
+     * Also include the return value if it is null
+     *
+     * @return always include field
+     */
+    boolean includeNull() default false;
+
+    /**
+     * Log a property of the return value instead of the value itself
+     *
+     * @return property path, empty for the return value itself
+     * @see LogAs#path()
+     */
+    String path() default "";
+
+    /**
+     * Maximum number of elements of arrays, collections and maps to include
+     *
+     * @return max number of elements (per container)
+     * @see LogAs#maxElements()
+     */
+    int maxElements() default -1;
+
+    /**
+     * Maximum number of characters in the return value
+     *
+     * @return max length of value
+     * @see LogAs#maxLength()
+     */
+    int maxLength() default -1;
+
+    /**
+     * Name of the MDC field with the class name of the exception
+     *
+     * @return name of MDC field, empty for not logging the exception type
+     */
+    String exception() default "exception";
+
+    /**
+     * Name of the MDC field with the message of the exception
+     *
+     * @return name of MDC field, empty for not logging the message
+     */
+    String exceptionMessage() default "";
+}
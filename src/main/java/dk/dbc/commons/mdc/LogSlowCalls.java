@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Log a warning when a call of the method is slow
+ * <p>
+ * When a call takes longer than the threshold, the duration is put in the
+ * MDC, and a warning is logged (by the logger of the declaring class), while
+ * the MDC values of the method ({@link LogAs} fields, tracking id) are still
+ * set. Calls under the threshold only cost reading the clock twice.
+ * <p>
+ * For asynchronous methods only the time until the method returns is measured.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@Inherited
+@Documented
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Deprecated(forRemoval = true, since = "2024 - use artifact: dk.dbc:dbc-commons-payara-helpers")
+public @interface LogSlowCalls {
+
+    /**
+     * Calls that take longer than this are logged
+     * <p>
+     * Negative means use the system property
+     * {@code dk.dbc.commons.mdc.slowCallMs}, which is 1000 if not set
+     *
+     * @return threshold in milliseconds
+     */
+    long thresholdMs() default -1;
+
+    /**
+     * Name of the MDC field with the duration in milliseconds
+     *
+     * @return name of MDC field
+     */
+    String field() default "durationMs";
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registration of the MXBeans of this library in the platform MBean server
+ * <p>
+ * The MBean server outlives deployments. When this library is bundled in an
+ * application, an MXBean left by an undeployed copy would answer for a dead
+ * classloader (and keep it alive), so a registration replaces whatever has
+ * the name, and a copy only unregisters its own MXBean.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class MBeans {
+
+    private static final Logger log = LoggerFactory.getLogger(MBeans.class);
+
+    private MBeans() {
+    }
+
+    /**
+     * Register an MXBean, replacing any MXBean with that name
+     *
+     * @param objectName name of the MXBean
+     * @param bean       the MXBean
+     */
+    static void register(String objectName, Object bean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(bean, name);
+        } catch (JMException | RuntimeException ex) {
+            log.warn("Cannot register {}: {}", objectName, ex.getMessage());
+            log.debug("Cannot register {}: {}", objectName, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Unregister an MXBean, if it was registered by this copy of the library
+     *
+     * @param objectName name of the MXBean
+     */
+    static void unregister(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name) && server.getClassLoaderFor(name) == MBeans.class.getClassLoader())
+                server.unregisterMBean(name);
+        } catch (JMException | RuntimeException ex) {
+            log.warn("Cannot unregister {}: {}", objectName, ex.getMessage());
+            log.debug("Cannot unregister {}: {}", objectName, ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Compile time validation of {@link LogAs}, {@link GenerateTrackingId},
+ * {@link LogSlowCalls} and {@link LogExit}
+ * <p>
+ * This reports misuse of the annotations as compile errors, and writes a
+ * {@link WrapperIndex}, that allows the {@link MDCExtension} to wrap the
+ * methods without reading annotations at deployment.
+ * <p>
+ * This is optional, and not registered as a service (it would then run in
+ * every project that has this on the classpath). Enable it with:
+ * <pre>
+ * &lt;annotationProcessors&gt;
+ *     &lt;annotationProcessor&gt;dk.dbc.commons.mdc.MDCAnnotationProcessor&lt;/annotationProcessor&gt;
+ * &lt;/annotationProcessors&gt;
+ * </pre>
+ * in the configuration of the maven-compiler-plugin.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+@SupportedAnnotationTypes({"dk.dbc.commons.mdc.LogAs", "dk.dbc.commons.mdc.GenerateTrackingId", "dk.dbc.commons.mdc.LogSlowCalls", "dk.dbc.commons.mdc.LogExit"})
+public final class MDCAnnotationProcessor extends AbstractProcessor {
+
+    // In declaration order, the setters are applied in the order of the lines
+    private final Set<String> lines = new LinkedHashSet<>();
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!lines.isEmpty())
+                writeIndex();
+            return false;
+        }
+        Set<ExecutableElement> methods = new LinkedHashSet<>();
+        for (Class<? extends Annotation> annotation : List.of(LogAs.class, GenerateTrackingId.class)) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.PARAMETER)
+                    methods.add((ExecutableElement) element.getEnclosingElement());
+            }
+        }
+        methods.forEach(this::processMethod);
+        for (Element element : roundEnv.getElementsAnnotatedWith(LogSlowCalls.class)) {
+            String fieldError = ParameterSpec.fieldNameError(element.getAnnotation(LogSlowCalls.class).field());
+            if (fieldError != null)
+                error(element, fieldError);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(LogExit.class)) {
+            if (element.getKind() == ElementKind.METHOD)
+                processExit((ExecutableElement) element);
+        }
+        return false;
+    }
+
+    /**
+     * Validate {@link LogExit} the same way as {@link ExitLine}
+     *
+     * @param method the annotated method
+     */
+    private void processExit(ExecutableElement method) {
+        LogExit exit = method.getAnnotation(LogExit.class);
+        for (String field : List.of(exit.result(), exit.exception(), exit.exceptionMessage())) {
+            String fieldError = field.isEmpty() ? null : ParameterSpec.fieldNameError(field);
+            if (fieldError != null)
+                error(method, fieldError);
+        }
+        TypeMirror returnType = processingEnv.getTypeUtils().erasure(method.getReturnType());
+        String returnClass = className(returnType);
+        boolean async = returnClass.equals("java.util.concurrent.CompletionStage") ||
+                        returnClass.equals("java.util.concurrent.CompletableFuture") ||
+                        method.getParameters().stream()
+                                .map(p -> className(processingEnv.getTypeUtils().erasure(p.asType())))
+                                .anyMatch("jakarta.ws.rs.container.AsyncResponse"::equals);
+        if (async)
+            error(method, ExitLine.ASYNC);
+        if (exit.result().isEmpty())
+            return;
+        if (returnType.getKind() == TypeKind.VOID) {
+            error(method, ExitLine.NO_RESULT);
+            return;
+        }
+        TypeMirror valueType = resolvePath(returnType, exit.path(), method);
+        if (valueType != null && cannotBecomeString(valueType))
+            warning(method, "Return value of type: " + valueType + " probably doesn't convert to a useful string");
+    }
+
+    private void processMethod(ExecutableElement method) {
+        if (method.getKind() != ElementKind.METHOD) {
+            warning(method, "MDC annotations are not supported on " + method.getKind().toString().toLowerCase(Locale.ROOT) + "s");
+            return;
+        }
+        if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+            warning(method, "MDC annotations are not supported on private or static methods");
+            return;
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        StringBuilder types = new StringBuilder();
+        for (VariableElement parameter : parameters) {
+            if (types.length() != 0)
+                types.append(',');
+            types.append(className(processingEnv.getTypeUtils().erasure(parameter.asType())));
+        }
+        String className = processingEnv.getElementUtils().getBinaryName((TypeElement) method.getEnclosingElement()).toString();
+        List<String> methodLines = new ArrayList<>();
+        boolean valid = true;
+        for (int i = 0 ; i < parameters.size() ; i++) {
+            VariableElement parameter = parameters.get(i);
+            GenerateTrackingId trackingId = parameter.getAnnotation(GenerateTrackingId.class);
+            LogAs mdc = parameter.getAnnotation(LogAs.class);
+            if (trackingId == null && mdc == null)
+                continue;
+            TypeMirror type = processingEnv.getTypeUtils().erasure(parameter.asType());
+            if (trackingId != null && !className(type).equals(String.class.getName())) {
+                error(parameter, ParameterSpec.TRACKING_ID_NOT_STRING);
+                valid = false;
+            }
+            if (mdc != null) {
+                String fieldError = ParameterSpec.fieldNameError(mdc.value());
+                if (fieldError != null) {
+                    error(parameter, fieldError);
+                    valid = false;
+                }
+                TypeMirror pathType = type;
+                if (mdc.perElement()) {
+                    pathType = elementType(parameter.asType());
+                    if (pathType == null) {
+                        error(parameter, ParameterSpec.PER_ELEMENT_TYPE);
+                        valid = false;
+                        continue;
+                    }
+                    if (mdc.lazy()) {
+                        error(parameter, ParameterSpec.PER_ELEMENT_LAZY);
+                        valid = false;
+                    }
+                }
+                TypeMirror valueType = resolvePath(pathType, mdc.path(), parameter);
+                if (valueType == null) {
+                    valid = false;
+                } else if (cannotBecomeString(valueType)) {
+                    warning(parameter, "Argument of type: " + valueType + " probably doesn't convert to a useful string");
+                }
+            }
+            ParameterSpec spec = mdc == null ?
+                                 new ParameterSpec(i, trackingId.value(), null, false, "", -1, -1, false, false, 0) :
+                                 new ParameterSpec(i, trackingId == null ? null : trackingId.value(),
+                                                   mdc.value(), mdc.includeNull(), mdc.path(),
+                                                   mdc.maxElements(), mdc.maxLength(), mdc.lazy(), mdc.perElement(), mdc.cacheSize());
+            methodLines.add(WrapperIndex.line(className, method.getSimpleName().toString(), types.toString(), spec));
+        }
+        if (valid) {
+            lines.addAll(methodLines);
+            originatingElements.add(method.getEnclosingElement());
+        }
+    }
+
+    /**
+     * Resolve a {@link LogAs#path()} the same way as {@link PropertyPath}
+     *
+     * @param type    erased parameter type
+     * @param path    the path
+     * @param element where to report errors
+     * @return erased type at the end of the path or null if an error has been
+     *         reported
+     */
+    private TypeMirror resolvePath(TypeMirror type, String path, Element element) {
+        if (path.isEmpty())
+            return type;
+        for (String name : path.split("\\.", -1)) {
+            if (name.isEmpty()) {
+                error(element, "Property path: " + path + " has an empty element");
+                return null;
+            }
+            if (type.getKind() != TypeKind.DECLARED) {
+                error(element, "Property path: " + path + " - " + type + " has no property: " + name);
+                return null;
+            }
+            TypeMirror next = property((TypeElement) ( (DeclaredType) type ).asElement(), name);
+            if (next == null) {
+                error(element, "Type: " + type + " has no property: " + name);
+                return null;
+            }
+            type = processingEnv.getTypeUtils().erasure(next);
+        }
+        return type;
+    }
+
+    private TypeMirror property(TypeElement type, String name) {
+        List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(type);
+        String capitalized = name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+        for (String methodName : new String[] {"get" + capitalized, "is" + capitalized, name}) {
+            for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+                if (!method.getSimpleName().contentEquals(methodName) ||
+                    !method.getParameters().isEmpty() ||
+                    !method.getModifiers().contains(Modifier.PUBLIC) ||
+                    method.getModifiers().contains(Modifier.STATIC))
+                    continue;
+                TypeKind returnKind = method.getReturnType().getKind();
+                if (returnKind == TypeKind.VOID)
+                    continue;
+                if (methodName.startsWith("is") && returnKind != TypeKind.BOOLEAN && !methodName.equals(name))
+                    continue;
+                return method.getReturnType();
+            }
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(members)) {
+            if (field.getSimpleName().contentEquals(name) &&
+                field.getModifiers().contains(Modifier.PUBLIC) &&
+                !field.getModifiers().contains(Modifier.STATIC))
+                return field.asType();
+        }
+        return null;
+    }
+
+    /**
+     * The element type of a per element parameter, like
+     * {@link PerElement#elementType(Class, java.lang.reflect.Type)}
+     *
+     * @param type the parameter type
+     * @return erased element type (Object if unknown) or null if the
+     *         parameter isn't an Iterable, Iterator or Stream
+     */
+    private TypeMirror elementType(TypeMirror type) {
+        TypeMirror object = processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType();
+        if (type.getKind() != TypeKind.DECLARED)
+            return null;
+        String name = className(processingEnv.getTypeUtils().erasure(type));
+        if (!name.equals(Iterable.class.getName()) && !name.equals(Iterator.class.getName()) && !name.equals(Stream.class.getName()))
+            return null;
+        List<? extends TypeMirror> arguments = ( (DeclaredType) type ).getTypeArguments();
+        if (arguments.isEmpty())
+            return object;
+        TypeMirror element = arguments.get(0);
+        if (element.getKind() == TypeKind.WILDCARD)
+            element = ( (WildcardType) element ).getExtendsBound();
+        if (element == null || element.getKind() != TypeKind.DECLARED && element.getKind() != TypeKind.ARRAY)
+            return object;
+        return processingEnv.getTypeUtils().erasure(element);
+    }
+
+    /**
+     * Same as the runtime check: a non primitive type, that doesn't declare
+     * toString() itself
+     */
+    private static boolean cannotBecomeString(TypeMirror type) {
+        if (type.getKind().isPrimitive())
+            return false;
+        if (type.getKind() != TypeKind.DECLARED)
+            return true;
+        for (ExecutableElement method : ElementFilter.methodsIn(( (DeclaredType) type ).asElement().getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals("toString") && method.getParameters().isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The name of an erased type, as given by {@link Class#getName()}
+     *
+     * @param type erased type
+     * @return class name
+     */
+    private String className(TypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+                return processingEnv.getElementUtils().getBinaryName((TypeElement) ( (DeclaredType) type ).asElement()).toString();
+            case ARRAY:
+                return "[" + descriptor(( (ArrayType) type ).getComponentType());
+            default:
+                return type.toString();
+        }
+    }
+
+    private String descriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case CHAR:
+                return "C";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case ARRAY:
+                return "[" + descriptor(( (ArrayType) type ).getComponentType());
+            default:
+                return "L" + className(type) + ";";
+        }
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", WrapperIndex.RESOURCE,
+                                    originatingElements.toArray(Element[]::new));
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(WrapperIndex.HEADER);
+                writer.write('\n');
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + WrapperIndex.RESOURCE + ": " + ex.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+}
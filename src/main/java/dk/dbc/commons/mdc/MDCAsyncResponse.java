@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.ConnectionCallback;
+import jakarta.ws.rs.container.TimeoutHandler;
+
+/**
+ * An {@link AsyncResponse}, that resumes and runs callbacks with an MDC
+ * snapshot
+ * <p>
+ * This replaces {@code @Suspended AsyncResponse} parameters of wrapped
+ * methods, so that the response is resumed, and timeout handlers and
+ * callback instances are run, with the MDC the method had.
+ * <p>
+ * This class is only loaded if a wrapped method has such a parameter, so
+ * JAX-RS isn't required at runtime otherwise.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class MDCAsyncResponse implements AsyncResponse {
+
+    private final AsyncResponse response;
+    private final MDCSnapshot snapshot;
+
+    private MDCAsyncResponse(AsyncResponse response, MDCSnapshot snapshot) {
+        this.response = response;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Wrap a parameter value
+     *
+     * @param response the {@link AsyncResponse} given to the method (typed
+     *                 as Object, so callers don't need JAX-RS classes)
+     * @param snapshot MDC from the method
+     * @return parameter value to pass on
+     */
+    static Object of(Object response, MDCSnapshot snapshot) {
+        if (response == null || response instanceof MDCAsyncResponse || snapshot.isEmpty())
+            return response;
+        return new MDCAsyncResponse((AsyncResponse) response, snapshot);
+    }
+
+    @Override
+    public boolean resume(Object value) {
+        return snapshot.apply((r, v) -> r.resume(v), response, value);
+    }
+
+    @Override
+    public boolean resume(Throwable error) {
+        return snapshot.apply((r, e) -> r.resume(e), response, error);
+    }
+
+    @Override
+    public boolean cancel() {
+        return response.cancel();
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return response.cancel(retryAfter);
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return response.cancel(retryAfter);
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return response.isSuspended();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return response.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return response.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return response.setTimeout(time, unit);
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+        if (handler == null) {
+            response.setTimeoutHandler(null);
+        } else {
+            response.setTimeoutHandler(r -> snapshot.apply((h, a) -> {
+                                       h.handleTimeout(a);
+                                       return null;
+                                   }, handler, this));
+        }
+    }
+
+    /**
+     * Callbacks registered by class are instantiated by the container, and
+     * cannot be wrapped
+     */
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return response.register(callback);
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return response.register(callback, callbacks);
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return response.register(wrapCallback(callback));
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        Object[] wrapped = new Object[callbacks.length];
+        for (int i = 0 ; i < callbacks.length ; i++) {
+            wrapped[i] = wrapCallback(callbacks[i]);
+        }
+        return response.register(wrapCallback(callback), wrapped);
+    }
+
+    /**
+     * Wrap a callback instance, implementing the same callback interfaces as
+     * the original (the container decides what to call by the interfaces)
+     *
+     * @param callback callback instance
+     * @return wrapped callback, or the callback if it isn't a known callback
+     *         type
+     */
+    private Object wrapCallback(Object callback) {
+        boolean completion = callback instanceof CompletionCallback;
+        boolean connection = callback instanceof ConnectionCallback;
+        if (completion && connection)
+            return new BothCallback((CompletionCallback) callback, (ConnectionCallback) callback);
+        if (completion)
+            return new MDCCompletionCallback((CompletionCallback) callback);
+        if (connection)
+            return new MDCConnectionCallback((ConnectionCallback) callback);
+        return callback;
+    }
+
+    private class MDCCompletionCallback implements CompletionCallback {
+
+        private final CompletionCallback callback;
+
+        private MDCCompletionCallback(CompletionCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onComplete(Throwable throwable) {
+            snapshot.apply((c, t) -> {
+                c.onComplete(t);
+                return null;
+            }, callback, throwable);
+        }
+    }
+
+    private class MDCConnectionCallback implements ConnectionCallback {
+
+        private final ConnectionCallback callback;
+
+        private MDCConnectionCallback(ConnectionCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onDisconnect(AsyncResponse disconnected) {
+            snapshot.apply((c, r) -> {
+                c.onDisconnect(r);
+                return null;
+            }, callback, MDCAsyncResponse.this);
+        }
+    }
+
+    private class BothCallback extends MDCCompletionCallback implements ConnectionCallback {
+
+        private final MDCConnectionCallback connection;
+
+        private BothCallback(CompletionCallback completion, ConnectionCallback connection) {
+            super(completion);
+            this.connection = new MDCConnectionCallback(connection);
+        }
+
+        @Override
+        public void onDisconnect(AsyncResponse disconnected) {
+            connection.onDisconnect(disconnected);
+        }
+    }
+}
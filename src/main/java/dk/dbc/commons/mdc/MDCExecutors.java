@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executors, that run tasks with the MDC of the submitting thread
+ * <p>
+ * The MDC is captured as an {@link MDCSnapshot} when a task is submitted,
+ * installed on the worker thread when it runs, and the MDC of the worker is
+ * restored afterwards.
+ * <p>
+ * This works with managed executors too (as {@link ExecutorService} or
+ * {@link ScheduledExecutorService}):
+ * <pre>
+ * &#64;Resource(lookup = "java:comp/DefaultManagedExecutorService")
+ * ManagedExecutorService mes;
+ * ...
+ * ExecutorService executor = MDCExecutors.wrap(mes);
+ * CompletableFuture.supplyAsync(() -&gt; ..., executor);
+ * </pre>
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class MDCExecutors {
+
+    private MDCExecutors() {
+    }
+
+    /**
+     * Wrap an executor
+     *
+     * @param executor the executor that runs the tasks
+     * @return executor that propagates the MDC
+     */
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof ExecutorService)
+            return wrap((ExecutorService) executor);
+        return command -> executor.execute(MDCSnapshot.capture().wrap(command));
+    }
+
+    /**
+     * Wrap an executor service
+     *
+     * @param executor the executor that runs the tasks
+     * @return executor that propagates the MDC
+     */
+    public static ExecutorService wrap(ExecutorService executor) {
+        if (executor instanceof MDCExecutorService)
+            return executor;
+        if (executor instanceof ScheduledExecutorService)
+            return new MDCScheduledExecutorService((ScheduledExecutorService) executor);
+        return new MDCExecutorService(executor);
+    }
+
+    /**
+     * Wrap a scheduled executor service
+     *
+     * @param executor the executor that runs the tasks
+     * @return executor that propagates the MDC
+     */
+    public static ScheduledExecutorService wrap(ScheduledExecutorService executor) {
+        if (executor instanceof MDCScheduledExecutorService)
+            return executor;
+        return new MDCScheduledExecutorService(executor);
+    }
+
+    private static class MDCExecutorService implements ExecutorService {
+
+        private final ExecutorService executor;
+
+        MDCExecutorService(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(MDCSnapshot.capture().wrap(command));
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return executor.submit(MDCSnapshot.capture().wrap(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return executor.submit(MDCSnapshot.capture().wrap(task), result);
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return executor.submit(MDCSnapshot.capture().wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return executor.invokeAll(wrap(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.invokeAll(wrap(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return executor.invokeAny(wrap(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return executor.invokeAny(wrap(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+
+        /**
+         * Wrap a collection of tasks with one snapshot
+         */
+        private static <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+            MDCSnapshot snapshot = MDCSnapshot.capture();
+            List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                wrapped.add(snapshot.wrap(task));
+            }
+            return wrapped;
+        }
+    }
+
+    private static class MDCScheduledExecutorService extends MDCExecutorService implements ScheduledExecutorService {
+
+        private final ScheduledExecutorService executor;
+
+        MDCScheduledExecutorService(ScheduledExecutorService executor) {
+            super(executor);
+            this.executor = executor;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            return executor.schedule(MDCSnapshot.capture().wrap(command), delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            return executor.schedule(MDCSnapshot.capture().wrap(callable), delay, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            return executor.scheduleAtFixedRate(MDCSnapshot.capture().wrap(command), initialDelay, period, unit);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return executor.scheduleWithFixedDelay(MDCSnapshot.capture().wrap(command), initialDelay, delay, unit);
+        }
+    }
+}
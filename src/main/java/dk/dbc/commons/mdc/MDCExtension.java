@@ -18,11 +18,16 @@
  */
 package dk.dbc.commons.mdc;
 
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.spi.AfterBeanDiscovery;
 import jakarta.enterprise.inject.spi.AnnotatedMethod;
+import jakarta.enterprise.inject.spi.BeforeShutdown;
 import jakarta.enterprise.inject.spi.Extension;
 import jakarta.enterprise.inject.spi.ProcessAnnotatedType;
 import jakarta.enterprise.inject.spi.WithAnnotations;
@@ -30,8 +35,9 @@ import jakarta.enterprise.inject.spi.configurator.AnnotatedMethodConfigurator;
 import jakarta.enterprise.util.AnnotationLiteral;
 
 /**
- * This processes all {@link LogAs} annotated methods, and enables an
- * interceptor for them.
+ * This processes all {@link LogAs} annotated methods (and methods annotated
+ * with {@link LogSlowCalls} or {@link LogExit}), and enables an interceptor
+ * for them.
  * <p>
  * This is triggered by: META-INF/services/jakarta.enterprise.inject.spi.Extension
  *
@@ -44,39 +50,111 @@ public class MDCExtension implements Extension {
     };
 
     private final List<String> SETUP_ERRORS = new ArrayList<>();
+    private final Map<Method, Invoker> WRAPPERS = new HashMap<>();
+    private MDCMetrics.Pending STATISTICS = new MDCMetrics.Pending();
+    private final List<Method> REGISTERED = new ArrayList<>();
+    private boolean policyRegistered;
+    private boolean filterInstalled;
+    private WrapperIndex index;
 
     /**
-     * Process all methods annotated with {@link LogAs} or
-     * {@link GenerateTrackingId}
+     * Process all methods annotated with {@link LogAs},
+     * {@link GenerateTrackingId}, {@link LogSlowCalls} or {@link LogExit}
      *
      * @param <T>                  Type definition
      * @param processAnnotatedType the method metadata for the class with the
      *                             annotation
      */
-    private <T> void processAnnotatedType(@Observes @WithAnnotations({LogAs.class, GenerateTrackingId.class}) ProcessAnnotatedType<T> processAnnotatedType) {
+    private <T> void processAnnotatedType(@Observes @WithAnnotations({LogAs.class, GenerateTrackingId.class, LogSlowCalls.class, LogExit.class}) ProcessAnnotatedType<T> processAnnotatedType) {
 
         processAnnotatedType.configureAnnotatedType()
                 .methods()
                 .stream()
-                .filter(this::isAnyParameterAnnotated)
+                .filter(this::isIntercepted)
                 .map(m -> m.add(MDC_ANNOTATION_BINDING))
                 .map(AnnotatedMethodConfigurator::getAnnotated)
                 .map(AnnotatedMethod::getJavaMember)
-                .map(MDCInterceptor::wrapMethod)
-                .filter(s -> s != null)
-                .forEach(SETUP_ERRORS::add);
+                .forEach(this::wrapMethod);
     }
 
-    private <T> boolean isAnyParameterAnnotated(AnnotatedMethodConfigurator<? super T> m) {
-        return m.getAnnotated().getParameters()
-                .stream()
-                .anyMatch(p ->
-                        p.isAnnotationPresent(LogAs.class) ||
-                        p.isAnnotationPresent(GenerateTrackingId.class));
+    /**
+     * Make the wrapper of an intercepted method
+     *
+     * @param method the method
+     */
+    void wrapMethod(Method method) {
+        String error = MDCInterceptor.wrapMethod(method, index(), WRAPPERS, STATISTICS);
+        if (error != null)
+            SETUP_ERRORS.add(error);
+    }
+
+    /**
+     * The compile time generated index of the deployment
+     * <p>
+     * Loaded when the first annotated type is seen, from the context
+     * classloader of the deployment.
+     *
+     * @return index (empty if the {@link MDCAnnotationProcessor} hasn't been
+     *         used)
+     */
+    private WrapperIndex index() {
+        if (index == null)
+            index = WrapperIndex.load(Thread.currentThread().getContextClassLoader());
+        return index;
+    }
+
+    private <T> boolean isIntercepted(AnnotatedMethodConfigurator<? super T> m) {
+        return m.getAnnotated().isAnnotationPresent(LogSlowCalls.class) ||
+               m.getAnnotated().isAnnotationPresent(LogExit.class) ||
+               m.getAnnotated().getParameters()
+                       .stream()
+                       .anyMatch(p ->
+                               p.isAnnotationPresent(LogAs.class) ||
+                               p.isAnnotationPresent(GenerateTrackingId.class));
     }
 
-    private void validationError(@Observes AfterBeanDiscovery afterBeanDiscovery) {
+    void afterBeanDiscovery(@Observes AfterBeanDiscovery afterBeanDiscovery) {
         SETUP_ERRORS.forEach(message -> afterBeanDiscovery.addDefinitionError(new IllegalStateException(message)));
+        // A failed deployment might not see BeforeShutdown, so only register when it can succeed
+        if (SETUP_ERRORS.isEmpty()) {
+            MDCInterceptor.register(WRAPPERS, STATISTICS);
+            REGISTERED.addAll(WRAPPERS.keySet());
+            if (!WRAPPERS.isEmpty()) {
+                MDCPolicy.registerMBean();
+                policyRegistered = true;
+            }
+            if (LazyMDC.isUsed()) {
+                LazyMDCTurboFilter.install();
+                filterInstalled = true;
+            }
+        }
         SETUP_ERRORS.clear();
+        WRAPPERS.clear();
+        STATISTICS = new MDCMetrics.Pending();
+        index = null;
+    }
+
+    /**
+     * Release the wrappers, the MXBean and the logback filter of this
+     * deployment
+     * <p>
+     * The interceptor registry is static, and if this library is shared
+     * between applications (server lib), it would keep the classes of an
+     * undeployed application alive. The MBean server outlives the
+     * deployment too, whether the library is shared or bundled.
+     *
+     * @param beforeShutdown the event
+     */
+    void beforeShutdown(@Observes BeforeShutdown beforeShutdown) {
+        MDCInterceptor.unregister(REGISTERED);
+        REGISTERED.clear();
+        if (policyRegistered) {
+            MDCPolicy.unregisterMBean();
+            policyRegistered = false;
+        }
+        if (filterInstalled) {
+            LazyMDCTurboFilter.uninstall();
+            filterInstalled = false;
+        }
     }
 }
@@ -18,15 +18,25 @@
  */
 package dk.dbc.commons.mdc;
 
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 import jakarta.annotation.Priority;
 import jakarta.interceptor.AroundInvoke;
 import jakarta.interceptor.Interceptor;
@@ -34,6 +44,7 @@ import jakarta.interceptor.InvocationContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
 
 /**
  * Across bean boundary interceptor annotation
@@ -54,79 +65,660 @@ class MDCInterceptor {
 
     private static final Logger log = LoggerFactory.getLogger(MDCInterceptor.class);
 
-    private static final HashMap<Method, Invoker> WRAPPERS = new HashMap<>();
+    /**
+     * System property that selects the {@link RestoreMode}
+     */
+    static final String RESTORE_MODE_PROPERTY = "dk.dbc.commons.mdc.restore";
+
+    /**
+     * System property with the default for {@link LogSlowCalls#thresholdMs()}
+     */
+    static final String SLOW_CALL_PROPERTY = "dk.dbc.commons.mdc.slowCallMs";
+    private static final long DEFAULT_SLOW_CALL_MS = 1000;
+
+    private static final String ASYNC_RESPONSE = "jakarta.ws.rs.container.AsyncResponse";
+
+    private static volatile WrapperRegistry WRAPPERS = WrapperRegistry.EMPTY;
     // Do noting "wrapper"
     private static final Invoker DEFAULT_WRAPPER = InvocationContext::proceed;
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object[].class);
+    private static final MethodHandle MDC_PUT = findStatic(MDCInterceptor.class, "putIfChanged", void.class, String.class, String.class);
+    static final MethodHandle STRING_VALUE_OF = findStatic(String.class, "valueOf", String.class, Object.class);
+    private static final MethodHandle FORMAT = findVirtual(BoundedFormatter.class, "format", String.class, Object.class);
+    private static final MethodHandle IS_NULL = findStatic(Objects.class, "isNull", boolean.class, Object.class);
+    private static final BoundedFormatter UNLIMITED_FORMATTER = new BoundedFormatter(BoundedFormatter.UNLIMITED, BoundedFormatter.UNLIMITED);
+    private static final MethodHandle LAZY_PUSH = findStatic(LazyMDC.class, "push", void.class, String.class, String.class, MethodHandle.class, boolean.class, Object.class);
+    private static final MethodHandle ENSURE_TRACKING_ID = findStatic(MDCInterceptor.class, "ensureTrackingId", void.class, int.class, TrackingIdGenerator.class, Object[].class);
+
     @FunctionalInterface
-    private interface Invoker {
+    interface Invoker {
 
         Object call(InvocationContext ic) throws Exception;
     }
 
+    /**
+     * How the MDC is put back, when a wrapped method returns
+     */
+    enum RestoreMode {
+        /**
+         * Take a copy of the entire MDC before the call, and reinstate it
+         * afterwards
+         */
+        FULL,
+        /**
+         * Remember only the values of the fields this method sets, and put
+         * those back (or remove them) afterwards
+         * <p>
+         * Cost depends on the number of {@link LogAs} parameters, not on the
+         * size of the MDC, but fields set by the method body itself are left
+         * in the MDC.
+         */
+        DELTA;
+
+        /**
+         * Get the configured restore mode
+         *
+         * @return mode from the system property {@value #RESTORE_MODE_PROPERTY}
+         *         or {@link #FULL} if not set
+         */
+        static RestoreMode configured() {
+            String mode = System.getProperty(RESTORE_MODE_PROPERTY, FULL.name());
+            return valueOf(mode.toUpperCase(Locale.ROOT));
+        }
+    }
+
     @AroundInvoke
-    private Object methodInvocation(InvocationContext context) throws Exception {
-        return WRAPPERS.getOrDefault(context.getMethod(), DEFAULT_WRAPPER)
+    Object methodInvocation(InvocationContext context) throws Exception {
+        return WRAPPERS.get(context.getMethod(), DEFAULT_WRAPPER)
                 .call(context);
     }
 
     /**
-     * Store in the global wrappers object a wrapper for this method
+     * Make the wrappers visible to the interceptor
+     * <p>
+     * The global registry is replaced by a new one containing the old and
+     * the new wrappers, so deployments can register concurrently, while
+     * calls read the registry without locking.
+     *
+     * @param wrappers method to invoker map as produced by
+     *                 {@link #wrapMethod(Method, Map)}
+     */
+    static synchronized void register(Map<Method, Invoker> wrappers) {
+        WRAPPERS = WRAPPERS.with(wrappers);
+    }
+
+    /**
+     * Make the wrappers visible to the interceptor, and their statistics
+     * visible in {@link MDCMetrics}
+     *
+     * @param wrappers   method to invoker map as produced by
+     *                   {@link #wrapMethod(Method, WrapperIndex, Map, MDCMetrics.Pending)}
+     * @param statistics the statistics of the wrappers
+     */
+    static synchronized void register(Map<Method, Invoker> wrappers, MDCMetrics.Pending statistics) {
+        register(wrappers);
+        statistics.publish();
+    }
+
+    /**
+     * Remove wrappers from the interceptor
+     * <p>
+     * When the library is shared between deployments, the registry would
+     * otherwise keep the classloader of an undeployed application alive.
+     *
+     * @param methods the methods that has been {@link #register(Map)
+     *                registered}
+     */
+    static synchronized void unregister(Collection<Method> methods) {
+        WRAPPERS = WRAPPERS.without(methods);
+        MDCMetrics.unregister(methods);
+    }
+
+    /**
+     * Store a wrapper for this method
+     * <p>
+     * The wrapper isn't used before the wrappers are
+     * {@link #register(Map) registered}
+     *
+     * @param method   The method that is annotated with {@link LogAs}
+     * @param wrappers where to store the wrapper
+     * @return an error message or null
+     */
+    static String wrapMethod(Method method, Map<Method, Invoker> wrappers) {
+        return wrapMethod(method, WrapperIndex.EMPTY, wrappers);
+    }
+
+    /**
+     * Store a wrapper for this method
+     * <p>
+     * If the method is in the index, the annotations aren't read (they have
+     * been validated at compile time), otherwise they're read by reflection.
      *
-     * @param method The method that is annotated with {@link LogAs}
+     * @param method   The method that is annotated with {@link LogAs}
+     * @param index    compile time generated index
+     * @param wrappers where to store the wrapper
      * @return an error message or null
      */
-    static String wrapMethod(Method method) {
+    static String wrapMethod(Method method, WrapperIndex index, Map<Method, Invoker> wrappers) {
+        return wrapMethod(method, index, wrappers, new MDCMetrics.Pending());
+    }
+
+    /**
+     * Store a wrapper for this method
+     * <p>
+     * If the method is in the index, the annotations aren't read (they have
+     * been validated at compile time), otherwise they're read by reflection.
+     * <p>
+     * Call metrics and value caches are only collected in statistics, they
+     * aren't visible in {@link MDCMetrics} before they're
+     * {@link #register(Map, MDCMetrics.Pending) registered}, so a failed
+     * deployment leaves nothing behind.
+     *
+     * @param method     The method that is annotated with {@link LogAs}
+     * @param index      compile time generated index
+     * @param wrappers   where to store the wrapper
+     * @param statistics where to store the statistics of the wrapper
+     * @return an error message or null
+     */
+    static String wrapMethod(Method method, WrapperIndex index, Map<Method, Invoker> wrappers, MDCMetrics.Pending statistics) {
         String methodName = method.toGenericString();
         try {
-            Stream.Builder<Consumer<Object[]>> builder = Stream.builder();
-            Parameter[] parameters = method.getParameters();
-            for (int i = 0 ; i < parameters.length ; i++) {
-                Parameter parameter = parameters[i];
-                Class<?> type = parameter.getType();
-                if (parameter.isAnnotationPresent(GenerateTrackingId.class)) {
-                    if (!type.equals(String.class))
-                        throw new IllegalArgumentException("@GenerateTrackingId can only be used upon String types");
-                    builder.add(makeTrackingIdSetter(i));
+            List<ParameterSpec> specs = index.get(method);
+            boolean validated = specs != null;
+            if (!validated)
+                specs = ParameterSpec.of(method);
+            Class<?>[] types = method.getParameterTypes();
+            List<MethodHandle> setters = new ArrayList<>();
+            List<ValueCache> caches = new ArrayList<>();
+            Set<String> fields = new LinkedHashSet<>();
+            boolean lazy = false;
+            List<Integer> perElementPositions = new ArrayList<>();
+            List<PerElement> perElements = new ArrayList<>();
+            // What is kept when the policy says no enrichment
+            List<MethodHandle> trackingSetters = new ArrayList<>();
+            Set<String> trackingFields = new LinkedHashSet<>();
+            boolean trackingLazy = false;
+            for (ParameterSpec spec : specs) {
+                int i = spec.position;
+                if (spec.trackingId != null) {
+                    MethodHandle setter = trackingIdSetter(i, spec.trackingId.resolve());
+                    setters.add(setter);
+                    trackingSetters.add(setter);
                 }
-                LogAs mdc = parameter.getAnnotation(LogAs.class);
-                if (mdc != null) {
-                    if (mdc.value().isEmpty())
-                        throw new IllegalArgumentException("An MDC field needs a name");
-                    if (!mdc.value().replaceAll("[-_.a-zA-Z0-9]", "").isEmpty())
-                        throw new IllegalArgumentException("MDC field name contains invalid characters (a-zA-Z0-9-_.)");
-                    if (cannotBecomeString(type))
-                        log.warn("Argument of type: {} probably doesn't convert to a useful string", type);
-                    builder.add(makeMDCSetter(i, mdc.value(), mdc.includeNull(), type));
+                if (spec.field != null) {
+                    Class<?> type = spec.perElement ?
+                                    PerElement.elementType(types[i], method.getGenericParameterTypes()[i]) :
+                                    types[i];
+                    PropertyPath path = PropertyPath.of(type, spec.path);
+                    if (!validated && cannotBecomeString(path.type()))
+                        log.warn("Argument of type: {} probably doesn't convert to a useful string", path.type());
+                    BoundedFormatter formatter = new BoundedFormatter(
+                            BoundedFormatter.limit(spec.maxElements, BoundedFormatter.MAX_ELEMENTS_PROPERTY),
+                            BoundedFormatter.limit(spec.maxLength, BoundedFormatter.MAX_LENGTH_PROPERTY));
+                    MethodHandle converter = converter(path.type(), formatter);
+                    if (spec.cacheSize > 0) {
+                        ValueCache cache = new ValueCache(methodName, spec.field, spec.cacheSize, converter);
+                        caches.add(cache);
+                        converter = cache.converter();
+                    }
+                    fields.add(spec.field);
+                    if (spec.perElement) {
+                        perElementPositions.add(i);
+                        perElements.add(new PerElement(spec.field, spec.includeNull, path, converter));
+                        continue;
+                    }
+                    MethodHandle setter;
+                    if (spec.lazy)
+                        setter = lazyMdcSetter(i, spec.field, spec.includeNull, path, converter);
+                    else
+                        setter = mdcSetter(i, spec.field, spec.includeNull, path, converter);
+                    setters.add(setter);
+                    lazy |= spec.lazy;
+                    if (spec.trackingId != null) {
+                        trackingSetters.add(setter);
+                        trackingFields.add(spec.field);
+                        trackingLazy |= spec.lazy;
+                    }
                 }
             }
-            Consumer<Object[]>[] functions = builder.build().toArray(Consumer[]::new);
-            WRAPPERS.put(method, makeInvoker(functions));
-            log.info("Wrapped {} for mdc logging", methodName);
+            Invoker proceed = asyncProceed(method);
+            LogExit exit = method.getAnnotation(LogExit.class);
+            if (exit != null && proceed != null)
+                throw new IllegalArgumentException(ExitLine.ASYNC);
+            LogSlowCalls slowCalls = method.getAnnotation(LogSlowCalls.class);
+            if (slowCalls != null) {
+                String error = ParameterSpec.fieldNameError(slowCalls.field());
+                if (error != null)
+                    throw new IllegalArgumentException(error);
+                proceed = makeSlowCallInvoker(proceed == null ? DEFAULT_WRAPPER : proceed,
+                                              slowCallThreshold(slowCalls.thresholdMs()), slowCalls.field(),
+                                              LoggerFactory.getLogger(method.getDeclaringClass()));
+            }
+            ExitLine exitLine = null;
+            if (exit != null) {
+                exitLine = ExitLine.of(method, exit);
+                proceed = exitLine.wrap(proceed == null ? DEFAULT_WRAPPER : proceed);
+            }
+            RestoreMode mode = RestoreMode.configured();
+            Invoker invoker = makeInvoker(combineSetters(setters), fields.toArray(String[]::new), mode, proceed);
+            if (lazy)
+                invoker = makeLazyInvoker(invoker);
+            if (!perElements.isEmpty())
+                invoker = makePerElementInvoker(invoker, perElementPositions.stream().mapToInt(Integer::intValue).toArray(),
+                                                perElements.toArray(PerElement[]::new));
+            if (!fields.isEmpty()) {
+                Invoker reduced;
+                if (trackingSetters.isEmpty())
+                    reduced = proceed == null ? DEFAULT_WRAPPER : proceed;
+                else if (trackingFields.isEmpty())
+                    reduced = makeTrackingIdInvoker(combineSetters(trackingSetters), proceed);
+                else
+                    reduced = makeInvoker(combineSetters(trackingSetters), trackingFields.toArray(String[]::new), mode, proceed);
+                if (trackingLazy)
+                    reduced = makeLazyInvoker(reduced);
+                invoker = makePolicyInvoker(invoker, reduced);
+            }
+            MethodMetrics metrics = null;
+            if (MDCMetrics.configured()) {
+                metrics = new MethodMetrics(methodName);
+                invoker = makeMetricsInvoker(invoker, metrics);
+            }
+            if (slowCalls != null)
+                fields.add(slowCalls.field());
+            if (exitLine != null)
+                fields.addAll(exitLine.fields());
+            JsonKeys.add(fields);
+            wrappers.put(method, invoker);
+            statistics.add(method, metrics, caches);
+            log.info("Wrapped {} for mdc logging{}", methodName, validated ? " (indexed)" : "");
         } catch (RuntimeException ex) {
             return ex.getMessage() + " for " + methodName;
         }
         return null;
     }
 
-    private static Invoker makeInvoker(Consumer<Object[]>[] functions) {
+    /**
+     * Make an invoker, that sets the MDC values, calls the method and restores
+     * the MDC
+     *
+     * @param setters the parameter setters as produced by
+     *                {@link #combineSetters(List)}
+     * @param fields  the (distinct) MDC fields the setters can set
+     * @param mode    how to restore the MDC
+     * @return invoker
+     */
+    static Invoker makeInvoker(MethodHandle setters, String[] fields, RestoreMode mode) {
+        return makeInvoker(setters, fields, mode, null);
+    }
+
+    /**
+     * Make an invoker, that sets the MDC values, calls the method and restores
+     * the MDC
+     *
+     * @param setters the parameter setters as produced by
+     *                {@link #combineSetters(List)}
+     * @param fields  the (distinct) MDC fields the setters can set
+     * @param mode    how to restore the MDC
+     * @param proceed how to call the method (with the MDC set), as made by
+     *                {@link #asyncProceed(Method)}, or null for
+     *                {@link InvocationContext#proceed()}
+     * @return invoker
+     */
+    static Invoker makeInvoker(MethodHandle setters, String[] fields, RestoreMode mode, Invoker proceed) {
+        switch (mode) {
+            case FULL:
+                return proceed == null ?
+                       makeFullRestoreInvoker(setters) :
+                       makeFullRestoreInvoker(setters, proceed);
+            case DELTA:
+                return proceed == null ?
+                       makeDeltaRestoreInvoker(setters, fields) :
+                       makeDeltaRestoreInvoker(setters, fields, proceed);
+            default:
+                throw new IllegalStateException("Restore mode: " + mode + " is not (yet) supported");
+        }
+    }
+
+    private static Invoker makeFullRestoreInvoker(MethodHandle setters) {
+        return (ic) -> {
+            Map<String, String> oldMdc = save();
+            try {
+                applySetters(setters, ic.getParameters());
+                return ic.proceed();
+            } finally {
+                restore(oldMdc);
+            }
+        };
+    }
+
+    private static Invoker makeFullRestoreInvoker(MethodHandle setters, Invoker proceed) {
+        return (ic) -> {
+            Map<String, String> oldMdc = save();
+            try {
+                applySetters(setters, ic.getParameters());
+                return proceed.call(ic);
+            } finally {
+                restore(oldMdc);
+            }
+        };
+    }
+
+    /**
+     * Get the MDC, for {@link #restore(Map)}
+     * <p>
+     * With logback this is the map itself, not a copy; logback never modifies
+     * a map that has been read (it copies on the next write).
+     *
+     * @return MDC map
+     */
+    private static Map<String, String> save() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter instanceof LogbackMDCAdapter)
+            return ( (LogbackMDCAdapter) adapter ).getPropertyMap();
+        @SuppressWarnings("unchecked")
+        Map<String, String> copy = MDC.getCopyOfContextMap();
+        return copy;
+    }
+
+    private static void restore(Map<String, String> oldMdc) {
+        if (oldMdc != null && oldMdc == MDCSnapshot.propertyMap())
+            return; // Nothing has been written (nested call with the same values)
+        if (oldMdc == null)
+            MDC.clear();
+        else
+            MDC.setContextMap(oldMdc);
+    }
+
+    private static Invoker makeDeltaRestoreInvoker(MethodHandle setters, String[] fields) {
         return (ic) -> {
-            Map<String, String> oldMdc = MDC.getCopyOfContextMap();
+            String[] oldValues = save(fields);
             try {
-                Object[] params = ic.getParameters();
-                for (Consumer<Object[]> function : functions) {
-                    function.accept(params);
+                applySetters(setters, ic.getParameters());
+                return ic.proceed();
+            } finally {
+                restore(fields, oldValues);
+            }
+        };
+    }
+
+    private static Invoker makeDeltaRestoreInvoker(MethodHandle setters, String[] fields, Invoker proceed) {
+        return (ic) -> {
+            String[] oldValues = save(fields);
+            try {
+                applySetters(setters, ic.getParameters());
+                return proceed.call(ic);
+            } finally {
+                restore(fields, oldValues);
+            }
+        };
+    }
+
+    private static String[] save(String[] fields) {
+        String[] oldValues = new String[fields.length];
+        for (int i = 0 ; i < fields.length ; i++) {
+            oldValues[i] = MDC.get(fields[i]);
+        }
+        return oldValues;
+    }
+
+    private static void restore(String[] fields, String[] oldValues) {
+        for (int i = 0 ; i < fields.length ; i++) {
+            String oldValue = oldValues[i];
+            if (oldValue != null)
+                putIfChanged(fields[i], oldValue);
+            else if (MDC.get(fields[i]) != null)
+                MDC.remove(fields[i]);
+        }
+    }
+
+    /**
+     * Put a value in the MDC, unless it is already there
+     * <p>
+     * Nested intercepted calls often pass the same values along (tracking id
+     * etc.), and with logback a write can mean copying the entire MDC.
+     *
+     * @param field MDC field
+     * @param value new value
+     */
+    static void putIfChanged(String field, String value) {
+        if (value == null || !value.equals(MDC.get(field)))
+            MDC.put(field, value);
+    }
+
+    /**
+     * Make the call of an asynchronous method, if it is one
+     * <p>
+     * A method is asynchronous if it returns a {@link CompletionStage} (or
+     * {@link CompletableFuture}), or has an {@code AsyncResponse} (JAX-RS)
+     * parameter. The MDC, as set up for the method, is captured as an
+     * {@link MDCSnapshot}, and installed when continuation stages,
+     * resumption and callbacks run (on whatever thread).
+     * <p>
+     * Lazy values are rendered before the snapshot is taken, since other
+     * threads don't know about them.
+     *
+     * @param method the method
+     * @return invoker that calls {@link InvocationContext#proceed()} or null
+     *         if the method isn't asynchronous
+     */
+    static Invoker asyncProceed(Method method) {
+        Class<?> returnType = method.getReturnType();
+        boolean stage = returnType == CompletionStage.class || returnType == CompletableFuture.class;
+        Class<?>[] types = method.getParameterTypes();
+        int[] responses = IntStream.range(0, types.length)
+                .filter(i -> types[i].getName().equals(ASYNC_RESPONSE))
+                .toArray();
+        if (!stage && responses.length == 0)
+            return null;
+        return (ic) -> {
+            MDCSnapshot snapshot = MDCSnapshot.capture();
+            if (responses.length != 0) {
+                Object[] parameters = ic.getParameters();
+                for (int i : responses) {
+                    parameters[i] = MDCAsyncResponse.of(parameters[i], snapshot);
                 }
+                ic.setParameters(parameters);
+            }
+            Object result = ic.proceed();
+            if (stage)
+                return MDCCompletableFuture.of((CompletionStage<?>) result, snapshot);
+            return result;
+        };
+    }
+
+    /**
+     * Wrap an invoker, so lazy values pushed by it are dropped when it
+     * returns
+     *
+     * @param invoker invoker that has lazy setters
+     * @return invoker
+     */
+    static Invoker makeLazyInvoker(Invoker invoker) {
+        return (ic) -> {
+            LazyMDC lazy = LazyMDC.current();
+            int mark = lazy.mark();
+            try {
+                return invoker.call(ic);
+            } finally {
+                lazy.release(mark);
+            }
+        };
+    }
+
+    /**
+     * Wrap an invoker, so parameters are replaced by wrappers, that set the
+     * MDC per element until the invoker returns
+     *
+     * @param invoker   invoker that sets the other MDC values
+     * @param positions parameter positions to wrap
+     * @param elements  the per element setter for each position
+     * @return invoker
+     */
+    static Invoker makePerElementInvoker(Invoker invoker, int[] positions, PerElement[] elements) {
+        return (ic) -> {
+            PerElement.Call call = new PerElement.Call();
+            Object[] params = ic.getParameters();
+            for (int i = 0 ; i < positions.length ; i++) {
+                params[positions[i]] = elements[i].wrap(params[positions[i]], call);
+            }
+            try {
+                return invoker.call(ic);
+            } finally {
+                call.end();
+            }
+        };
+    }
+
+    /**
+     * Make an invoker, that follows the {@link MDCPolicy}
+     *
+     * @param full    invoker that sets all the MDC values
+     * @param reduced invoker that only handles tracking ids
+     * @return invoker
+     */
+    static Invoker makePolicyInvoker(Invoker full, Invoker reduced) {
+        return (ic) -> MDCPolicy.enrich() ?
+                       full.call(ic) :
+                       reduced.call(ic);
+    }
+
+    /**
+     * Make an invoker, that only generates tracking ids (which are not in the
+     * MDC), so there's nothing to restore
+     *
+     * @param setters the tracking id setters
+     * @param proceed how to call the method or null for
+     *                {@link InvocationContext#proceed()}
+     * @return invoker
+     */
+    private static Invoker makeTrackingIdInvoker(MethodHandle setters, Invoker proceed) {
+        if (proceed == null)
+            return (ic) -> {
+                applySetters(setters, ic.getParameters());
                 return ic.proceed();
+            };
+        return (ic) -> {
+            applySetters(setters, ic.getParameters());
+            return proceed.call(ic);
+        };
+    }
+
+    /**
+     * Resolve the threshold of {@link LogSlowCalls}
+     *
+     * @param annotated the threshold from the annotation
+     * @return threshold in milliseconds
+     */
+    static long slowCallThreshold(long annotated) {
+        if (annotated >= 0)
+            return annotated;
+        String value = System.getProperty(SLOW_CALL_PROPERTY);
+        if (value == null || value.isEmpty())
+            return DEFAULT_SLOW_CALL_MS;
+        return Long.parseLong(value);
+    }
+
+    /**
+     * Make the call of a method, that warns about slow calls
+     * <p>
+     * This runs inside the MDC setup, so the warning has the MDC values of
+     * the method. Only when the threshold is exceeded is the duration
+     * formatted and put in the MDC, and the field is put back afterwards.
+     *
+     * @param proceed     how to call the method
+     * @param thresholdMs threshold in milliseconds
+     * @param field       MDC field for the duration
+     * @param logger      where to log
+     * @return invoker
+     */
+    static Invoker makeSlowCallInvoker(Invoker proceed, long thresholdMs, String field, Logger logger) {
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        return (ic) -> {
+            long start = System.nanoTime();
+            try {
+                return proceed.call(ic);
             } finally {
-                if (oldMdc == null)
-                    MDC.clear();
-                else
-                    MDC.setContextMap(oldMdc);
+                long nanos = System.nanoTime() - start;
+                if (nanos > thresholdNanos)
+                    logSlowCall(ic.getMethod(), TimeUnit.NANOSECONDS.toMillis(nanos), thresholdMs, field, logger);
             }
         };
     }
 
+    private static void logSlowCall(Method method, long durationMs, long thresholdMs, String field, Logger logger) {
+        String oldValue = MDC.get(field);
+        MDC.put(field, Long.toString(durationMs));
+        try {
+            logger.warn("Slow call of {}: {}ms (threshold {}ms)", method == null ? "?" : method.getName(), durationMs, thresholdMs);
+        } finally {
+            if (oldValue == null)
+                MDC.remove(field);
+            else
+                MDC.put(field, oldValue);
+        }
+    }
+
+    /**
+     * Wrap an invoker, so the calls are timed
+     * <p>
+     * This covers the entire interceptor, including setting up the MDC.
+     *
+     * @param invoker the invoker
+     * @param metrics where to record the call
+     * @return invoker
+     */
+    static Invoker makeMetricsInvoker(Invoker invoker, MethodMetrics metrics) {
+        return (ic) -> {
+            long start = System.nanoTime();
+            boolean error = true;
+            try {
+                Object result = invoker.call(ic);
+                error = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, error);
+            }
+        };
+    }
+
+    /**
+     * Combine setters into one method handle, that calls them in order
+     * <p>
+     * Every wrapped method gets its own chain of handles, with parameter
+     * positions, field names and converters bound as constants. When called
+     * often enough, the JVM customizes (compiles) the chain for that specific
+     * handle, so there's no shared, megamorphic call site like a loop over
+     * {@link Consumer}s would have.
+     *
+     * @param setters handles of type {@code (Object[])void}
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle combineSetters(List<MethodHandle> setters) {
+        MethodHandle combined = MethodHandles.empty(SETTER_TYPE);
+        for (int i = setters.size() - 1 ; i >= 0 ; i--) {
+            combined = MethodHandles.foldArguments(combined, setters.get(i));
+        }
+        return combined;
+    }
+
+    /**
+     * Call a setter
+     *
+     * @param setter handle of type {@code (Object[])void}
+     * @param params the parameters of the call
+     */
+    static void applySetters(MethodHandle setter, Object[] params) {
+        try {
+            setter.invokeExact(params);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     /**
      * Make a Consumer that ensures a value in a parameter
      *
@@ -134,10 +726,53 @@ class MDCInterceptor {
      * @return function
      */
     static Consumer<Object[]> makeTrackingIdSetter(int pos) {
-        return params -> {
-            if (params[pos] == null || ( (String) params[pos] ).trim().isEmpty())
-                params[pos] = UUID.randomUUID().toString();
-        };
+        return makeTrackingIdSetter(pos, TrackingIdGenerator.configured());
+    }
+
+    /**
+     * Make a Consumer that ensures a value in a parameter
+     *
+     * @param pos       parameter position
+     * @param generator how to make a value
+     * @return function
+     */
+    static Consumer<Object[]> makeTrackingIdSetter(int pos, TrackingIdGenerator generator) {
+        MethodHandle setter = trackingIdSetter(pos, generator);
+        return params -> applySetters(setter, params);
+    }
+
+    /**
+     * Make a setter that ensures a value in a parameter
+     *
+     * @param pos       parameter position
+     * @param generator how to make a value
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle trackingIdSetter(int pos, TrackingIdGenerator generator) {
+        return MethodHandles.insertArguments(ENSURE_TRACKING_ID, 0, pos, generator);
+    }
+
+    private static void ensureTrackingId(int pos, TrackingIdGenerator generator, Object[] params) {
+        if (isBlank((String) params[pos]))
+            params[pos] = generator.generate();
+    }
+
+    /**
+     * Check if a string is null or only whitespace
+     * <p>
+     * Whitespace as in {@link String#trim()}, without making a trimmed copy
+     *
+     * @param s string
+     * @return if there's no content
+     */
+    static boolean isBlank(String s) {
+        if (s == null)
+            return true;
+        for (int i = 0 ; i < s.length() ; i++) {
+            if (s.charAt(i) > ' ')
+                return false;
+        }
+        return true;
     }
 
     /**
@@ -151,55 +786,160 @@ class MDCInterceptor {
      * @return function
      */
     static Consumer<Object[]> makeMDCSetter(int pos, String field, boolean includeNull, Class<?> type) {
-        if (type.isArray()) {
-            type = type.getComponentType();
-            if (type.isArray()) {
-                return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.deepToString((Object[]) o));
-            } else if (type.isPrimitive()) {
-                switch (type.getName()) {
-                    case "double":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((double[]) o));
-                    case "float":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((float[]) o));
-                    case "long":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((long[]) o));
-                    case "int":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((int[]) o));
-                    case "short":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((short[]) o));
-                    case "char":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((char[]) o));
-                    case "byte":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((byte[]) o));
-                    case "boolean":
-                        return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((boolean[]) o));
-                    default:
-                        throw new IllegalStateException("Type: " + type.getName() + " is primitive but not (yet) supported");
-                }
-            } else {
-                if (cannotBecomeString(type))
-                    log.warn("Argument of type: {} probably doesn't convert to a useful string", type);
-                return makeMDCArraySetter(pos, field, includeNull, o -> Arrays.toString((Object[]) o));
-            }
-        } else {
-            return params -> {
-                Object param = params[pos];
-                if (param != null || includeNull) {
-                    MDC.put(field, String.valueOf(param));
-                }
-            };
-        }
+        MethodHandle setter = mdcSetter(pos, field, includeNull, type);
+        return params -> applySetters(setter, params);
+    }
+
+    /**
+     * Create a setter, that copies a parameter value to the MDC object
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if parameter is null should it be included as "null"?
+     * @param type        the formal type of the parameter (needed for primitive
+     *                    arrays)
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle mdcSetter(int pos, String field, boolean includeNull, Class<?> type) {
+        return mdcSetter(pos, field, includeNull, type, UNLIMITED_FORMATTER);
+    }
+
+    /**
+     * Create a setter, that copies a parameter value to the MDC object
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if parameter is null should it be included as "null"?
+     * @param type        the formal type of the parameter (needed for primitive
+     *                    arrays)
+     * @param formatter   limits for the string representation of the value
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle mdcSetter(int pos, String field, boolean includeNull, Class<?> type, BoundedFormatter formatter) {
+        return mdcSetter(pos, field, includeNull, PropertyPath.of(type, ""), formatter);
+    }
+
+    /**
+     * Create a setter, that copies a (property of a) parameter value to the
+     * MDC object
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if value is null should it be included as "null"?
+     * @param path        the path from the parameter to the value
+     * @param formatter   limits for the string representation of the value
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle mdcSetter(int pos, String field, boolean includeNull, PropertyPath path, BoundedFormatter formatter) {
+        return mdcSetter(pos, field, includeNull, path, converter(path.type(), formatter));
+    }
+
+    /**
+     * Create a setter, that copies a (property of a) parameter value to the
+     * MDC object
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if value is null should it be included as "null"?
+     * @param path        the path from the parameter to the value
+     * @param converter   handle of type {@code (Object)String}, that converts
+     *                    the value
+     * @return handle of type {@code (Object[])void}
+     */
+    static MethodHandle mdcSetter(int pos, String field, boolean includeNull, PropertyPath path, MethodHandle converter) {
+        MethodHandle put = MethodHandles.insertArguments(MDC_PUT, 0, field);
+        MethodHandle whenNull = includeNull ?
+                                MethodHandles.dropArguments(MethodHandles.insertArguments(put, 0, "null"), 0, Object.class) :
+                                MethodHandles.empty(MethodType.methodType(void.class, Object.class));
+        MethodHandle whenNotNull = MethodHandles.filterArguments(put, 0, converter);
+        MethodHandle value = MethodHandles.guardWithTest(IS_NULL, whenNull, whenNotNull);
+        return MethodHandles.filterArguments(value, 0, valueGetter(pos, path));
     }
 
-    private static Consumer<Object[]> makeMDCArraySetter(int pos, String field, boolean includeNull, Function<Object, String> toString) {
-        return params -> {
-            Object param = params[pos];
-            if (param != null) {
-                MDC.put(field, toString.apply(param));
-            } else if (includeNull) {
-                MDC.put(field, "null");
+    /**
+     * Make a handle that extracts a value from the parameters
+     *
+     * @param pos  parameter position
+     * @param path the path from the parameter to the value
+     * @return handle of type {@code (Object[])Object}
+     */
+    private static MethodHandle valueGetter(int pos, PropertyPath path) {
+        return path.from(MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, pos));
+    }
+
+    /**
+     * Create a setter, that puts a placeholder in the MDC object, and
+     * remembers the (property of the) parameter value, for converting it when
+     * it is logged
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if value is null should it be included as "null"?
+     * @param path        the path from the parameter to the value
+     * @param formatter   limits for the string representation of the value
+     * @return handle of type {@code (Object[])void}
+     * @see LazyMDC
+     */
+    static MethodHandle lazyMdcSetter(int pos, String field, boolean includeNull, PropertyPath path, BoundedFormatter formatter) {
+        return lazyMdcSetter(pos, field, includeNull, path, converter(path.type(), formatter));
+    }
+
+    /**
+     * Create a setter, that puts a placeholder in the MDC object, and
+     * remembers the (property of the) parameter value, for converting it when
+     * it is logged
+     *
+     * @param pos         parameter position
+     * @param field       name of MDC field
+     * @param includeNull if value is null should it be included as "null"?
+     * @param path        the path from the parameter to the value
+     * @param converter   handle of type {@code (Object)String}, that converts
+     *                    the value
+     * @return handle of type {@code (Object[])void}
+     * @see LazyMDC
+     */
+    static MethodHandle lazyMdcSetter(int pos, String field, boolean includeNull, PropertyPath path, MethodHandle converter) {
+        MethodHandle push = MethodHandles.insertArguments(LAZY_PUSH, 0, field, LazyMDC.makePlaceholder(), converter, includeNull);
+        return MethodHandles.filterArguments(push, 0, valueGetter(pos, path));
+    }
+
+    /**
+     * Make a handle that converts a (non null) value to a string
+     * <p>
+     * Enums and integral types have built-in conversions
+     * ({@link ValueStrings}). For other types, when there are limits,
+     * everything goes through the formatter, otherwise arrays are converted
+     * by {@link Arrays} and everything else by
+     * {@link String#valueOf(java.lang.Object)}
+     *
+     * @param type      the formal type of the value
+     * @param formatter limits for the string representation of the value
+     * @return handle of type {@code (Object)String}
+     */
+    static MethodHandle converter(Class<?> type, BoundedFormatter formatter) {
+        MethodHandle builtIn = ValueStrings.converter(type, formatter);
+        if (builtIn != null)
+            return builtIn;
+        if (!formatter.isUnlimited())
+            return FORMAT.bindTo(formatter);
+        if (!type.isArray())
+            return STRING_VALUE_OF;
+        try {
+            Class<?> component = type.getComponentType();
+            MethodHandle toString;
+            if (component.isArray()) {
+                toString = LOOKUP.findStatic(Arrays.class, "deepToString", MethodType.methodType(String.class, Object[].class));
+            } else if (component.isPrimitive()) {
+                toString = LOOKUP.findStatic(Arrays.class, "toString", MethodType.methodType(String.class, type));
+            } else {
+                if (cannotBecomeString(component))
+                    log.warn("Argument of type: {} probably doesn't convert to a useful string", component);
+                toString = LOOKUP.findStatic(Arrays.class, "toString", MethodType.methodType(String.class, Object[].class));
             }
-        };
+            return toString.asType(MethodType.methodType(String.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new IllegalStateException("Type: " + type.getName() + " is not (yet) supported", ex);
+        }
     }
 
     /**
@@ -219,4 +959,20 @@ class MDCInterceptor {
         }
         return true;
     }
+
+    private static MethodHandle findStatic(Class<?> clazz, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findStatic(clazz, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> clazz, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return LOOKUP.findVirtual(clazz, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Logback encoder, that writes an event as a line of JSON, in the same layout
+ * as the {@code LogstashEncoder} configured in the example logback.xml
+ * <p>
+ * <pre>
+ * &lt;encoder class="dk.dbc.commons.mdc.MDCJsonEncoder"/&gt;
+ * </pre>
+ * The fields are {@code timestamp}, {@code version}, {@code message},
+ * {@code logger}, {@code thread}, {@code level}, {@code level_value},
+ * {@code stack_trace} (if any), the properties of the logback context and the
+ * MDC as an object {@code mdc}.
+ * <p>
+ * The keys of the MDC fields, that the {@link MDCExtension} knows from
+ * {@link LogAs} annotations, are encoded once when the methods are wrapped.
+ * The context properties are encoded when the encoder starts. Everything is
+ * written into a reusable per thread buffer, with a fast path for strings,
+ * that need no escaping.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCJsonEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] TIMESTAMP = ascii("{\"timestamp\":\"");
+    private static final byte[] VERSION = ascii("\",\"version\":\"1\"");
+    private static final byte[] MESSAGE = ascii(",\"message\":");
+    private static final byte[] LOGGER = ascii(",\"logger\":");
+    private static final byte[] THREAD = ascii(",\"thread\":");
+    private static final byte[] STACK_TRACE = ascii(",\"stack_trace\":");
+    private static final byte[] MDC = ascii(",\"mdc\":{");
+    private static final byte[] END = ascii("}\n");
+    private static final byte[] TRACE = level(Level.TRACE);
+    private static final byte[] DEBUG = level(Level.DEBUG);
+    private static final byte[] INFO = level(Level.INFO);
+    private static final byte[] WARN = level(Level.WARN);
+    private static final byte[] ERROR = level(Level.ERROR);
+    private static final DateTimeFormatter SECOND = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.");
+    private static final DateTimeFormatter OFFSET = DateTimeFormatter.ofPattern("xxx");
+
+    private final ThreadLocal<PerThread> perThread = ThreadLocal.withInitial(PerThread::new);
+    private ZoneId zone = ZoneId.systemDefault();
+    private boolean includeContext = true;
+    private byte[] contextFields = new byte[0];
+
+    /**
+     * Set the time zone of the timestamps
+     *
+     * @param timeZone zone id (default is the system time zone)
+     */
+    public void setTimeZone(String timeZone) {
+        this.zone = ZoneId.of(timeZone);
+    }
+
+    /**
+     * Set if the properties of the logback context should be included
+     *
+     * @param includeContext true (default) to include them
+     */
+    public void setIncludeContext(boolean includeContext) {
+        this.includeContext = includeContext;
+    }
+
+    @Override
+    public void start() {
+        contextFields = encodeContext();
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        PerThread state = Threads.isVirtual() ? new PerThread() : perThread.get();
+        JsonBuffer out = state.buffer.reset();
+        out.raw(TIMESTAMP);
+        state.timestamp(event.getTimeStamp());
+        out.raw(VERSION);
+        out.raw(MESSAGE);
+        out.string(event.getFormattedMessage());
+        out.raw(LOGGER);
+        out.string(event.getLoggerName());
+        out.raw(THREAD);
+        out.string(event.getThreadName());
+        out.raw(level(event.getLevel().toInt()));
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            out.raw(STACK_TRACE);
+            out.string(ThrowableProxyUtil.asString(throwable));
+        }
+        out.raw(contextFields);
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null && !mdc.isEmpty()) {
+            out.raw(MDC);
+            boolean first = true;
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first)
+                    out.raw(',');
+                first = false;
+                byte[] key = JsonKeys.get(entry.getKey());
+                if (key == null) {
+                    out.string(entry.getKey());
+                    out.raw(':');
+                } else {
+                    out.raw(key);
+                }
+                out.string(entry.getValue());
+            }
+            out.raw('}');
+        }
+        out.raw(END);
+        return out.toByteArray();
+    }
+
+    private byte[] encodeContext() {
+        if (!includeContext || getContext() == null)
+            return new byte[0];
+        Map<String, String> properties = getContext().getCopyOfPropertyMap();
+        if (properties == null || properties.isEmpty())
+            return new byte[0];
+        JsonBuffer buffer = new JsonBuffer();
+        new TreeMap<>(properties).forEach((key, value) -> {
+            buffer.raw(',');
+            buffer.string(key);
+            buffer.raw(':');
+            buffer.string(value);
+        });
+        return buffer.toByteArray();
+    }
+
+    private static byte[] level(int level) {
+        switch (level) {
+            case Level.TRACE_INT:
+                return TRACE;
+            case Level.DEBUG_INT:
+                return DEBUG;
+            case Level.INFO_INT:
+                return INFO;
+            case Level.WARN_INT:
+                return WARN;
+            case Level.ERROR_INT:
+                return ERROR;
+            default:
+                return level(Level.toLevel(level));
+        }
+    }
+
+    private static byte[] level(Level level) {
+        return ascii(",\"level\":\"" + level + "\",\"level_value\":" + level.toInt());
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The buffer and the formatted timestamp of the current second, of one
+     * thread
+     */
+    private final class PerThread {
+
+        private final JsonBuffer buffer = new JsonBuffer();
+        private long second = Long.MIN_VALUE;
+        private byte[] secondPrefix;
+        private byte[] offset;
+
+        /**
+         * Write a timestamp like 2024-05-01T12:34:56.789+02:00
+         *
+         * @param millis epoch millis
+         */
+        private void timestamp(long millis) {
+            long epochSecond = Math.floorDiv(millis, 1000L);
+            if (epochSecond != second) {
+                ZonedDateTime time = Instant.ofEpochSecond(epochSecond).atZone(zone);
+                secondPrefix = ascii(SECOND.format(time));
+                offset = ascii(OFFSET.format(time));
+                second = epochSecond;
+            }
+            buffer.raw(secondPrefix);
+            buffer.threeDigits((int) Math.floorMod(millis, 1000L));
+            buffer.raw(offset);
+        }
+    }
+}
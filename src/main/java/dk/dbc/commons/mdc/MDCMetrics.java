@@ -0,0 +1,521 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.ConstructorParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per method call metrics, recorded by the interceptor
+ * <p>
+ * Enabled by the system property {@value #PROPERTY} ({@code true}), when the
+ * methods are wrapped. The metrics are available from {@link #snapshot()}
+ * and over JMX as {@value #OBJECT_NAME}.
+ * <p>
+ * The statistics of {@link LogAs#cacheSize() value caches} and of the limits
+ * of a {@link MDCRateLimitFilter} are always available, from
+ * {@link #cacheSnapshot()} and {@link #rateLimitSnapshot()}, and the same
+ * MXBean.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class MDCMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(MDCMetrics.class);
+
+    /**
+     * System property that enables metrics
+     */
+    public static final String PROPERTY = "dk.dbc.commons.mdc.metrics";
+
+    /**
+     * Name of the MXBean
+     */
+    public static final String OBJECT_NAME = "dk.dbc.commons.mdc:type=MDCMetrics";
+
+    private static final ConcurrentHashMap<Method, MethodMetrics> METHODS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Method, List<ValueCache>> CACHES = new ConcurrentHashMap<>();
+    private static final List<RateLimit> RATE_LIMITS = new CopyOnWriteArrayList<>();
+    private static boolean mbeanRegistered;
+
+    private MDCMetrics() {
+    }
+
+    /**
+     * If metrics are enabled
+     *
+     * @return the system property {@value #PROPERTY}
+     */
+    static boolean configured() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Statistics of wrapped methods, that aren't visible until the
+     * deployment is known to succeed
+     * <p>
+     * The statistics are kept by {@link Method}, so registering them while
+     * the methods are wrapped would keep the classloader of a failed
+     * deployment alive (it never sees {@code BeforeShutdown}). Value caches
+     * also hold values of the application.
+     */
+    static final class Pending {
+
+        private final Map<Method, MethodMetrics> methods = new HashMap<>();
+        private final Map<Method, List<ValueCache>> caches = new HashMap<>();
+
+        /**
+         * Add the statistics of a wrapped method
+         *
+         * @param method  the wrapped method
+         * @param metrics call metrics or null if not enabled
+         * @param caches  the value caches of its parameters
+         */
+        void add(Method method, MethodMetrics metrics, List<ValueCache> caches) {
+            if (metrics != null)
+                methods.put(method, metrics);
+            if (!caches.isEmpty())
+                this.caches.put(method, List.copyOf(caches));
+        }
+
+        /**
+         * Make the statistics available
+         * <p>
+         * The first time there is something to publish the MXBean is
+         * registered
+         */
+        void publish() {
+            if (methods.isEmpty() && caches.isEmpty())
+                return;
+            synchronized (MDCMetrics.class) {
+                registerMBean();
+                METHODS.putAll(methods);
+                CACHES.putAll(caches);
+            }
+        }
+    }
+
+    /**
+     * Make the statistics of a rate limit available
+     *
+     * @param rateLimit limit of a started {@link MDCRateLimitFilter}
+     */
+    static synchronized void register(RateLimit rateLimit) {
+        registerMBean();
+        RATE_LIMITS.add(rateLimit);
+    }
+
+    /**
+     * Drop the statistics of a rate limit, when the filter stops
+     *
+     * @param rateLimit the limit
+     */
+    static synchronized void unregister(RateLimit rateLimit) {
+        RATE_LIMITS.remove(rateLimit);
+        unregisterUnusedMBean();
+    }
+
+    /**
+     * Drop the metrics of methods, that are no longer wrapped
+     *
+     * @param methods the methods
+     */
+    static synchronized void unregister(Collection<Method> methods) {
+        METHODS.keySet().removeAll(methods);
+        CACHES.keySet().removeAll(methods);
+        unregisterUnusedMBean();
+    }
+
+    /**
+     * Current metrics of all the methods
+     *
+     * @return list ordered by method name
+     */
+    public static List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(METHODS.size());
+        METHODS.values().forEach(m -> snapshots.add(m.snapshot()));
+        snapshots.sort(Comparator.comparing(Snapshot::getMethod));
+        return snapshots;
+    }
+
+    /**
+     * Current statistics of all value caches
+     *
+     * @return list ordered by method and field name
+     */
+    public static List<CacheSnapshot> cacheSnapshot() {
+        List<CacheSnapshot> snapshots = new ArrayList<>();
+        CACHES.values().forEach(caches -> caches.forEach(c -> snapshots.add(c.snapshot())));
+        snapshots.sort(Comparator.comparing(CacheSnapshot::getMethod).thenComparing(CacheSnapshot::getField));
+        return snapshots;
+    }
+
+    /**
+     * Current statistics of all rate limits
+     *
+     * @return list in configuration order
+     */
+    public static List<RateLimitSnapshot> rateLimitSnapshot() {
+        List<RateLimitSnapshot> snapshots = new ArrayList<>(RATE_LIMITS.size());
+        RATE_LIMITS.forEach(r -> snapshots.add(r.snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * Zero all metrics
+     */
+    public static void reset() {
+        METHODS.values().forEach(MethodMetrics::reset);
+    }
+
+    private static synchronized void registerMBean() {
+        if (mbeanRegistered)
+            return;
+        mbeanRegistered = true;
+        MBeans.register(OBJECT_NAME, new Bean());
+    }
+
+    /**
+     * When the last statistics are gone (the deployments have shut down),
+     * the MXBean is unregistered, so it doesn't show (or keep) an undeployed
+     * copy of this library
+     */
+    private static synchronized void unregisterUnusedMBean() {
+        if (mbeanRegistered && METHODS.isEmpty() && CACHES.isEmpty() && RATE_LIMITS.isEmpty()) {
+            mbeanRegistered = false;
+            MBeans.unregister(OBJECT_NAME);
+        }
+    }
+
+    private static final class Bean implements MDCMetricsMXBean {
+
+        @Override
+        public List<Snapshot> getMethods() {
+            return snapshot();
+        }
+
+        @Override
+        public List<CacheSnapshot> getValueCaches() {
+            return cacheSnapshot();
+        }
+
+        @Override
+        public List<RateLimitSnapshot> getRateLimits() {
+            return rateLimitSnapshot();
+        }
+
+        @Override
+        public void reset() {
+            MDCMetrics.reset();
+        }
+    }
+
+    /**
+     * Statistics of the rate limit of one MDC field at one point in time
+     */
+    public static final class RateLimitSnapshot {
+
+        private final String field;
+        private final double eventsPerSecond;
+        private final int burst;
+        private final double sampleRate;
+        private final int values;
+        private final long passed;
+        private final long sampledOut;
+        private final long rateLimited;
+        private final long evictions;
+
+        /**
+         * Construct a snapshot
+         *
+         * @param field           MDC field
+         * @param eventsPerSecond sustained rate per value (0 is unlimited)
+         * @param burst           events allowed at once per value
+         * @param sampleRate      fraction of the values, that are logged
+         * @param values          number of values, that are tracked
+         * @param passed          number of events, that were logged
+         * @param sampledOut      number of events, dropped by sampling
+         * @param rateLimited     number of events, dropped by the rate limit
+         * @param evictions       number of values, that were forgotten to make
+         *                        room for new ones
+         */
+        @ConstructorParameters({"field", "eventsPerSecond", "burst", "sampleRate", "values", "passed", "sampledOut", "rateLimited", "evictions"})
+        public RateLimitSnapshot(String field, double eventsPerSecond, int burst, double sampleRate, int values, long passed, long sampledOut, long rateLimited, long evictions) {
+            this.field = field;
+            this.eventsPerSecond = eventsPerSecond;
+            this.burst = burst;
+            this.sampleRate = sampleRate;
+            this.values = values;
+            this.passed = passed;
+            this.sampledOut = sampledOut;
+            this.rateLimited = rateLimited;
+            this.evictions = evictions;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public double getEventsPerSecond() {
+            return eventsPerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getValues() {
+            return values;
+        }
+
+        public long getPassed() {
+            return passed;
+        }
+
+        public long getSampledOut() {
+            return sampledOut;
+        }
+
+        public long getRateLimited() {
+            return rateLimited;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * Number of events, that were suppressed
+         *
+         * @return sampled out and rate limited events
+         */
+        public long getSuppressed() {
+            return sampledOut + rateLimited;
+        }
+
+        @Override
+        public String toString() {
+            return field + "{passed=" + passed + ", sampledOut=" + sampledOut +
+                   ", rateLimited=" + rateLimited + ", values=" + values + ", evictions=" + evictions + "}";
+        }
+    }
+
+    /**
+     * Statistics of one value cache at one point in time
+     */
+    public static final class CacheSnapshot {
+
+        private final String method;
+        private final String field;
+        private final int capacity;
+        private final int size;
+        private final long hits;
+        private final long misses;
+
+        /**
+         * Construct a snapshot
+         *
+         * @param method   method name
+         * @param field    MDC field
+         * @param capacity max number of entries
+         * @param size     number of entries
+         * @param hits     number of lookups, that found the value
+         * @param misses   number of lookups, that converted the value
+         */
+        @ConstructorParameters({"method", "field", "capacity", "size", "hits", "misses"})
+        public CacheSnapshot(String method, String field, int capacity, int size, long hits, long misses) {
+            this.method = method;
+            this.field = field;
+            this.capacity = capacity;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Fraction of lookups, that were hits
+         *
+         * @return 0.0 to 1.0 (0.0 if there has been no lookups)
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return method + "[" + field + "]{size=" + size + "/" + capacity +
+                   ", hits=" + hits + ", misses=" + misses + "}";
+        }
+    }
+
+    /**
+     * Metrics of one method at one point in time
+     */
+    public static final class Snapshot {
+
+        private final String method;
+        private final long calls;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        /**
+         * Construct a snapshot
+         *
+         * @param method     method name
+         * @param calls      number of calls
+         * @param errors     number of calls, that threw an exception
+         * @param totalNanos total duration of all calls
+         * @param maxNanos   longest call
+         * @param buckets    histogram bucket counts
+         */
+        @ConstructorParameters({"method", "calls", "errors", "totalNanos", "maxNanos", "buckets"})
+        public Snapshot(String method, long calls, long errors, long totalNanos, long maxNanos, long[] buckets) {
+            this.method = method;
+            this.calls = calls;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets.clone();
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+
+        public long getP50Nanos() {
+            return percentileNanos(0.5);
+        }
+
+        public long getP90Nanos() {
+            return percentileNanos(0.9);
+        }
+
+        public long getP99Nanos() {
+            return percentileNanos(0.99);
+        }
+
+        public long getP999Nanos() {
+            return percentileNanos(0.999);
+        }
+
+        /**
+         * Histogram counts, see {@link #percentileNanos(double)}
+         *
+         * @return copy of the bucket counts
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        /**
+         * Latency at a percentile
+         * <p>
+         * The value is the upper bound of the histogram bucket, that the
+         * percentile falls into (at most 25% above the actual value), capped
+         * by the maximum.
+         *
+         * @param fraction percentile as a fraction (0.99 for p99)
+         * @return nanoseconds (0 if there are no calls)
+         */
+        public long percentileNanos(double fraction) {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0 ; i < buckets.length ; i++) {
+                seen += buckets[i];
+                if (seen >= rank)
+                    return Math.min(MethodMetrics.upperBound(i), maxNanos);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return method + "{calls=" + calls + ", errors=" + errors +
+                   ", mean=" + getMeanNanos() + "ns, p50=" + getP50Nanos() +
+                   "ns, p99=" + getP99Nanos() + "ns, max=" + maxNanos + "ns}";
+        }
+    }
+}
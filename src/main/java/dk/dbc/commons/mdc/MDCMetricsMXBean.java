@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link MDCMetrics}
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public interface MDCMetricsMXBean {
+
+    /**
+     * Metrics of all wrapped methods
+     *
+     * @return list of snapshots
+     */
+    List<MDCMetrics.Snapshot> getMethods();
+
+    /**
+     * Statistics of all value caches
+     *
+     * @return list of snapshots
+     */
+    List<MDCMetrics.CacheSnapshot> getValueCaches();
+
+    /**
+     * Statistics of the limits of the {@link MDCRateLimitFilter}s
+     *
+     * @return list of snapshots
+     */
+    List<MDCMetrics.RateLimitSnapshot> getRateLimits();
+
+    /**
+     * Zero all metrics
+     */
+    void reset();
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+/**
+ * How much the interceptor puts in the MDC, switchable at runtime
+ * <p>
+ * The policy is read from the system properties {@value #PROPERTY},
+ * {@value #LOGGER_PROPERTY} and {@value #LEVEL_PROPERTY} when the class is
+ * loaded, and again by {@link #reload()}. It can be changed over JMX as
+ * {@value #OBJECT_NAME}, or by {@link #set(Mode, String, Level)}.
+ * <p>
+ * Every wrapped call checks the policy by a single volatile read. In
+ * {@link Mode#LOGGER_ENABLED} the level check of the logger comes on top of
+ * that.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class MDCPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(MDCPolicy.class);
+
+    /**
+     * System property with the {@link Mode}
+     */
+    public static final String PROPERTY = "dk.dbc.commons.mdc.policy";
+
+    /**
+     * System property with the name of the logger, for
+     * {@link Mode#LOGGER_ENABLED} (default is the root logger)
+     */
+    public static final String LOGGER_PROPERTY = "dk.dbc.commons.mdc.policy.logger";
+
+    /**
+     * System property with the level the logger should be enabled for, for
+     * {@link Mode#LOGGER_ENABLED} (default INFO)
+     */
+    public static final String LEVEL_PROPERTY = "dk.dbc.commons.mdc.policy.level";
+
+    /**
+     * Name of the MXBean
+     */
+    public static final String OBJECT_NAME = "dk.dbc.commons.mdc:type=MDCPolicy";
+
+    /**
+     * What the interceptor does
+     */
+    public enum Mode {
+        /**
+         * Set all the MDC values (the default)
+         */
+        FULL,
+        /**
+         * Set all the MDC values, when the configured logger is enabled for
+         * the configured level, otherwise as {@link #OFF}
+         */
+        LOGGER_ENABLED,
+        /**
+         * Only generate tracking ids ({@link GenerateTrackingId}), and put
+         * those in the MDC
+         */
+        OFF
+    }
+
+    private static volatile State STATE = State.of(Mode.FULL, Logger.ROOT_LOGGER_NAME, LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME), Level.INFO);
+    private static int deployments;
+
+    static {
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            log.error("Invalid mdc policy: {} - using {}", ex.getMessage(), Mode.FULL);
+        }
+    }
+
+    private MDCPolicy() {
+    }
+
+    /**
+     * If the interceptor should set all the MDC values
+     * <p>
+     * This is called for every wrapped call
+     *
+     * @return false if only tracking ids should be set
+     */
+    static boolean enrich() {
+        return STATE.enrich();
+    }
+
+    /**
+     * The current mode
+     *
+     * @return mode
+     */
+    public static Mode getMode() {
+        return STATE.mode;
+    }
+
+    /**
+     * The logger used by {@link Mode#LOGGER_ENABLED}
+     *
+     * @return logger name
+     */
+    public static String getLogger() {
+        return STATE.loggerName;
+    }
+
+    /**
+     * The level used by {@link Mode#LOGGER_ENABLED}
+     *
+     * @return level
+     */
+    public static Level getLevel() {
+        return STATE.level;
+    }
+
+    /**
+     * Change the mode, keeping logger and level
+     *
+     * @param mode new mode
+     */
+    public static void set(Mode mode) {
+        State state = STATE;
+        set(mode, state.loggerName, state.logger, state.level);
+    }
+
+    /**
+     * Change the policy
+     *
+     * @param mode   new mode
+     * @param logger logger name for {@link Mode#LOGGER_ENABLED}
+     * @param level  level for {@link Mode#LOGGER_ENABLED}
+     */
+    public static void set(Mode mode, String logger, Level level) {
+        if (logger == null)
+            throw new IllegalArgumentException("Mode, logger and level are required");
+        set(mode, logger, LoggerFactory.getLogger(logger), level);
+    }
+
+    /**
+     * Change the policy
+     *
+     * @param mode       new mode
+     * @param loggerName name of the logger
+     * @param logger     logger for {@link Mode#LOGGER_ENABLED}
+     * @param level      level for {@link Mode#LOGGER_ENABLED}
+     */
+    static synchronized void set(Mode mode, String loggerName, Logger logger, Level level) {
+        if (mode == null || logger == null || level == null)
+            throw new IllegalArgumentException("Mode, logger and level are required");
+        State old = STATE;
+        State state = State.of(mode, loggerName, logger, level);
+        if (state.mode != old.mode || state.level != old.level || !state.loggerName.equals(old.loggerName))
+            log.info("MDC policy: {}", state);
+        STATE = state;
+    }
+
+    /**
+     * Set the policy from the system properties
+     */
+    public static void reload() {
+        set(parse(Mode.class, System.getProperty(PROPERTY, Mode.FULL.name())),
+            System.getProperty(LOGGER_PROPERTY, Logger.ROOT_LOGGER_NAME),
+            parse(Level.class, System.getProperty(LEVEL_PROPERTY, Level.INFO.name())));
+    }
+
+    private static <T extends Enum<T>> T parse(Class<T> type, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName().toLowerCase(Locale.ROOT) + ": " + value);
+        }
+    }
+
+    /**
+     * Make the policy available over JMX, when a deployment starts
+     * <p>
+     * The first deployment registers the MXBean, replacing one left by
+     * another copy of this library.
+     */
+    static synchronized void registerMBean() {
+        if (deployments++ == 0)
+            MBeans.register(OBJECT_NAME, new Bean());
+    }
+
+    /**
+     * Remove the policy from JMX, when a deployment shuts down
+     * <p>
+     * The MXBean is unregistered when the last deployment, that has
+     * {@link #registerMBean() registered}, is gone.
+     */
+    static synchronized void unregisterMBean() {
+        if (deployments > 0 && --deployments == 0)
+            MBeans.unregister(OBJECT_NAME);
+    }
+
+    /**
+     * Immutable policy, so a call only reads one volatile field
+     */
+    private abstract static class State {
+
+        final Mode mode;
+        final String loggerName;
+        final Logger logger;
+        final Level level;
+
+        private State(Mode mode, String loggerName, Logger logger, Level level) {
+            this.mode = mode;
+            this.loggerName = loggerName;
+            this.logger = logger;
+            this.level = level;
+        }
+
+        static State of(Mode mode, String loggerName, Logger logger, Level level) {
+            switch (mode) {
+                case FULL:
+                    return new Constant(mode, loggerName, logger, level, true);
+                case OFF:
+                    return new Constant(mode, loggerName, logger, level, false);
+                case LOGGER_ENABLED:
+                    return new LoggerEnabled(mode, loggerName, logger, level);
+                default:
+                    throw new IllegalArgumentException("Mode: " + mode + " is not (yet) supported");
+            }
+        }
+
+        abstract boolean enrich();
+
+        @Override
+        public String toString() {
+            return mode == Mode.LOGGER_ENABLED ? mode + " (" + loggerName + " at " + level + ")" : mode.name();
+        }
+    }
+
+    private static final class Constant extends State {
+
+        private final boolean enrich;
+
+        private Constant(Mode mode, String loggerName, Logger logger, Level level, boolean enrich) {
+            super(mode, loggerName, logger, level);
+            this.enrich = enrich;
+        }
+
+        @Override
+        boolean enrich() {
+            return enrich;
+        }
+    }
+
+    private static final class LoggerEnabled extends State {
+
+        private LoggerEnabled(Mode mode, String loggerName, Logger logger, Level level) {
+            super(mode, loggerName, logger, level);
+        }
+
+        @Override
+        boolean enrich() {
+            switch (level) {
+                case TRACE:
+                    return logger.isTraceEnabled();
+                case DEBUG:
+                    return logger.isDebugEnabled();
+                case INFO:
+                    return logger.isInfoEnabled();
+                case WARN:
+                    return logger.isWarnEnabled();
+                default:
+                    return logger.isErrorEnabled();
+            }
+        }
+    }
+
+    private static final class Bean implements MDCPolicyMXBean {
+
+        @Override
+        public String getMode() {
+            return MDCPolicy.getMode().name();
+        }
+
+        @Override
+        public void setMode(String mode) {
+            set(parse(Mode.class, mode));
+        }
+
+        @Override
+        public String getLogger() {
+            return MDCPolicy.getLogger();
+        }
+
+        @Override
+        public void setLogger(String logger) {
+            set(MDCPolicy.getMode(), logger, MDCPolicy.getLevel());
+        }
+
+        @Override
+        public String getLevel() {
+            return MDCPolicy.getLevel().name();
+        }
+
+        @Override
+        public void setLevel(String level) {
+            State state = STATE;
+            set(state.mode, state.loggerName, state.logger, parse(Level.class, level));
+        }
+
+        @Override
+        public void reload() {
+            MDCPolicy.reload();
+        }
+    }
+}
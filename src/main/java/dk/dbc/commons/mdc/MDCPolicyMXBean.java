@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+/**
+ * JMX view of the {@link MDCPolicy}
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public interface MDCPolicyMXBean {
+
+    /**
+     * The current mode
+     *
+     * @return name of a {@link MDCPolicy.Mode}
+     */
+    String getMode();
+
+    /**
+     * Change the mode
+     *
+     * @param mode name of a {@link MDCPolicy.Mode}
+     */
+    void setMode(String mode);
+
+    /**
+     * The logger checked in {@link MDCPolicy.Mode#LOGGER_ENABLED}
+     *
+     * @return logger name
+     */
+    String getLogger();
+
+    /**
+     * Change the logger checked in {@link MDCPolicy.Mode#LOGGER_ENABLED}
+     *
+     * @param logger logger name
+     */
+    void setLogger(String logger);
+
+    /**
+     * The level checked in {@link MDCPolicy.Mode#LOGGER_ENABLED}
+     *
+     * @return level name
+     */
+    String getLevel();
+
+    /**
+     * Change the level checked in {@link MDCPolicy.Mode#LOGGER_ENABLED}
+     *
+     * @param level TRACE, DEBUG, INFO, WARN or ERROR
+     */
+    void setLevel(String level);
+
+    /**
+     * Set the policy from the system properties
+     */
+    void reload();
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Logback filter, that samples and rate limits log events by the values of
+ * MDC fields, typically those set by {@link LogAs}
+ * <pre>
+ * &lt;turboFilter class="dk.dbc.commons.mdc.MDCRateLimitFilter"&gt;
+ *   &lt;limit&gt;
+ *     &lt;field&gt;trackingId&lt;/field&gt;
+ *     &lt;eventsPerSecond&gt;50&lt;/eventsPerSecond&gt;
+ *     &lt;burst&gt;200&lt;/burst&gt;
+ *   &lt;/limit&gt;
+ *   &lt;limit&gt;
+ *     &lt;field&gt;recordId&lt;/field&gt;
+ *     &lt;sampleRate&gt;0.1&lt;/sampleRate&gt;
+ *   &lt;/limit&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ * An event is denied if any limit denies it. Events without the field, events
+ * at or above {@link #setExemptLevel(String) the exempt level} (default
+ * ERROR) and log statements, that aren't enabled anyway, are left alone
+ * ({@link FilterReply#NEUTRAL}).
+ * <p>
+ * Memory is fixed by {@link #setTableSize(int) the table size} no matter how
+ * many values show up. The counts of passed and suppressed events are in
+ * {@link MDCMetrics#rateLimitSnapshot()} and the {@link MDCMetrics} MXBean.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCRateLimitFilter extends TurboFilter {
+
+    private static final int DEFAULT_TABLE_SIZE = 4096;
+
+    private final List<Limit> limits = new ArrayList<>();
+    private int tableSize = DEFAULT_TABLE_SIZE;
+    private Level exemptLevel = Level.ERROR;
+    private RateLimit[] active = new RateLimit[0];
+
+    /**
+     * Add a limit (the {@code <limit>} element)
+     *
+     * @param limit limit configuration
+     */
+    public void addLimit(Limit limit) {
+        limits.add(limit);
+    }
+
+    /**
+     * Set the max number of values, that are tracked per field
+     *
+     * @param tableSize number of values (default 4096, max 65536)
+     */
+    public void setTableSize(int tableSize) {
+        this.tableSize = tableSize;
+    }
+
+    /**
+     * Set the level from which events are never suppressed
+     *
+     * @param exemptLevel level name (default ERROR, OFF exempts nothing)
+     */
+    public void setExemptLevel(String exemptLevel) {
+        this.exemptLevel = Level.toLevel(exemptLevel, Level.ERROR);
+    }
+
+    @Override
+    public void start() {
+        if (tableSize < 1 || tableSize > RateLimit.MAX_TABLE_SIZE) {
+            addError("tableSize should be between 1 and " + RateLimit.MAX_TABLE_SIZE);
+            return;
+        }
+        List<RateLimit> rateLimits = new ArrayList<>();
+        for (Limit limit : limits) {
+            String error = limit.error();
+            if (error != null) {
+                addError(error);
+                return;
+            }
+            rateLimits.add(limit.build(tableSize));
+        }
+        if (rateLimits.isEmpty())
+            addWarn("No limits configured");
+        active = rateLimits.toArray(RateLimit[]::new);
+        for (RateLimit rateLimit : active) {
+            MDCMetrics.register(rateLimit);
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        for (RateLimit rateLimit : active) {
+            MDCMetrics.unregister(rateLimit);
+        }
+        active = new RateLimit[0];
+        super.stop();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || level.isGreaterOrEqual(exemptLevel) ||
+            format == null && params == null && t == null || // isXxxEnabled() call
+            !level.isGreaterOrEqual(logger.getEffectiveLevel()))
+            return FilterReply.NEUTRAL;
+        if (LazyMDC.isUsed())
+            LazyMDC.materialize();
+        return limit(System.nanoTime());
+    }
+
+    /**
+     * Apply the limits to the current MDC
+     *
+     * @param nowNanos {@link System#nanoTime()}
+     * @return DENY if a limit is exceeded, otherwise NEUTRAL
+     */
+    FilterReply limit(long nowNanos) {
+        for (RateLimit rateLimit : active) {
+            String value = MDC.get(rateLimit.field());
+            if (value != null && !rateLimit.allow(value, nowNanos))
+                return FilterReply.DENY;
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    /**
+     * Configuration of the limit of one field
+     */
+    public static class Limit {
+
+        private String field;
+        private double eventsPerSecond;
+        private int burst;
+        private double sampleRate = 1.0;
+
+        /**
+         * Set the MDC field
+         *
+         * @param field field name (required)
+         */
+        public void setField(String field) {
+            this.field = field;
+        }
+
+        /**
+         * Set the sustained rate per value
+         *
+         * @param eventsPerSecond events per second (default 0 - no rate
+         *                        limit)
+         */
+        public void setEventsPerSecond(double eventsPerSecond) {
+            this.eventsPerSecond = eventsPerSecond;
+        }
+
+        /**
+         * Set the number of events per value, that are allowed at once
+         *
+         * @param burst number of events (default is events per second, at
+         *              least 1)
+         */
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        /**
+         * Set the fraction of the values, whose events are logged
+         *
+         * @param sampleRate between 0 and 1 (default 1 - all)
+         */
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        private String error() {
+            if (field == null)
+                return "A limit needs a field";
+            String error = ParameterSpec.fieldNameError(field);
+            if (error != null)
+                return error;
+            if (eventsPerSecond < 0)
+                return "eventsPerSecond cannot be negative for " + field;
+            if (burst < 0)
+                return "burst cannot be negative for " + field;
+            if (sampleRate < 0 || sampleRate > 1)
+                return "sampleRate should be between 0 and 1 for " + field;
+            return null;
+        }
+
+        private RateLimit build(int tableSize) {
+            int events = burst > 0 ? burst : Math.max(1, (int) Math.ceil(eventsPerSecond));
+            return new RateLimit(field, eventsPerSecond, events, sampleRate, tableSize);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.Arrays;
+import org.slf4j.MDC;
+
+/**
+ * MDC values for a block of code, without an intercepted method
+ * <p>
+ * For loops that process many items in one method call (batch jobs etc.):
+ * <pre>
+ * for (Record record : records) {
+ *     try (MDCScope scope = MDCScope.of("recordId", record.getId())
+ *             .and("agencyId", record.getAgencyId())) {
+ *         process(record);
+ *     }
+ * }
+ * </pre>
+ * When the scope is closed the fields are put back as they were before (or
+ * removed). Other MDC values are left alone.
+ * <p>
+ * Values are converted like {@link LogAs} values (with the default limits
+ * of the system properties {@code dk.dbc.commons.mdc.maxElements} and
+ * {@code dk.dbc.commons.mdc.maxLength}), and a null value removes the field
+ * while the scope is open. A value that is already in the MDC isn't written.
+ * Small integers come from a table, and a scope with one field is a single
+ * small object, so a loop allocates only the value strings beyond that.
+ * <p>
+ * A scope must be closed on the thread that opened it, and nested scopes
+ * should be closed in reverse order (as try-with-resources does). Every
+ * scope is a new object, so closing a scope again, even after a new scope
+ * has been opened, does nothing.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class MDCScope implements AutoCloseable {
+
+    private static final int INITIAL_FIELDS = 4;
+    private static final BoundedFormatter FORMATTER = new BoundedFormatter(
+            BoundedFormatter.limit(-1, BoundedFormatter.MAX_ELEMENTS_PROPERTY),
+            BoundedFormatter.limit(-1, BoundedFormatter.MAX_LENGTH_PROPERTY));
+
+    // The first field is kept inline, the arrays are for the rest
+    private String field;
+    private String oldValue;
+    private String[] fields;
+    private String[] oldValues;
+    private int size;
+    private boolean open = true;
+
+    private MDCScope() {
+    }
+
+    /**
+     * Open a scope with one MDC field
+     *
+     * @param field MDC field name
+     * @param value the value (null removes the field in the scope)
+     * @return open scope
+     */
+    public static MDCScope of(String field, Object value) {
+        return new MDCScope().set(field, text(value));
+    }
+
+    /**
+     * Open a scope with one MDC field
+     *
+     * @param field MDC field name
+     * @param value the value
+     * @return open scope
+     */
+    public static MDCScope of(String field, long value) {
+        return new MDCScope().set(field, ValueStrings.integer(value, FORMATTER));
+    }
+
+    /**
+     * Add a field to the scope
+     *
+     * @param field MDC field name
+     * @param value the value (null removes the field in the scope)
+     * @return this scope
+     */
+    public MDCScope and(String field, Object value) {
+        if (!open)
+            throw new IllegalStateException("MDCScope is closed");
+        String text;
+        try {
+            text = text(value);
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        return set(field, text);
+    }
+
+    /**
+     * Add a field to the scope
+     *
+     * @param field MDC field name
+     * @param value the value
+     * @return this scope
+     */
+    public MDCScope and(String field, long value) {
+        if (!open)
+            throw new IllegalStateException("MDCScope is closed");
+        return set(field, ValueStrings.integer(value, FORMATTER));
+    }
+
+    /**
+     * Put the fields of the scope back as they were when it was opened
+     * <p>
+     * Closing a closed scope does nothing.
+     */
+    @Override
+    public void close() {
+        if (!open)
+            return;
+        open = false;
+        for (int i = size - 2 ; i >= 0 ; i--) {
+            restore(fields[i], oldValues[i]);
+        }
+        if (size > 0)
+            restore(field, oldValue);
+        size = 0;
+    }
+
+    private static String text(Object value) {
+        if (value == null)
+            return null;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return ValueStrings.integer(( (Number) value ).longValue(), FORMATTER);
+        return FORMATTER.format(value);
+    }
+
+    private static void restore(String field, String oldValue) {
+        if (oldValue != null)
+            MDCInterceptor.putIfChanged(field, oldValue);
+        else if (MDC.get(field) != null)
+            MDC.remove(field);
+    }
+
+    private MDCScope set(String field, String value) {
+        String oldValue = MDC.get(field);
+        if (size == 0) {
+            this.field = field;
+            this.oldValue = oldValue;
+        } else {
+            if (fields == null) {
+                fields = new String[INITIAL_FIELDS];
+                oldValues = new String[INITIAL_FIELDS];
+            } else if (size - 1 == fields.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+                oldValues = Arrays.copyOf(oldValues, oldValues.length * 2);
+            }
+            fields[size - 1] = field;
+            oldValues[size - 1] = oldValue;
+        }
+        size++;
+        if (value != null)
+            MDCInterceptor.putIfChanged(field, value);
+        else if (oldValue != null)
+            MDC.remove(field);
+        return this;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
+
+/**
+ * An immutable copy of the MDC of a thread, that can be installed on other
+ * threads
+ * <p>
+ * This is for handing work to executors, without loosing the MDC values
+ * (tracking id etc.):
+ * <pre>
+ * MDCSnapshot snapshot = MDCSnapshot.capture();
+ * executor.submit(snapshot.wrap(() -&gt; ...));
+ * </pre>
+ * or use an executor from {@link MDCExecutors}, that does this for every
+ * task.
+ * <p>
+ * With logback, capturing doesn't copy the MDC; logback never modifies a map
+ * once it has been read (it copies on the next write), so the snapshot
+ * refers to that map. As long as the MDC of the thread is unchanged,
+ * {@link #capture()} returns the same snapshot instance, so tasks submitted
+ * from the same (intercepted) method share one snapshot (not on virtual
+ * threads, where a new snapshot is made every time).
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public final class MDCSnapshot {
+
+    /**
+     * A snapshot of an empty MDC
+     */
+    public static final MDCSnapshot EMPTY = new MDCSnapshot(Collections.emptyMap());
+
+    private static final ThreadLocal<MDCSnapshot> LAST = new ThreadLocal<>();
+
+    private final Map<String, String> context;
+
+    private MDCSnapshot(Map<String, String> context) {
+        this.context = context;
+    }
+
+    /**
+     * Take a snapshot of the MDC of the current thread
+     * <p>
+     * Lazy {@link LogAs} values are rendered first, the thread that runs a
+     * task doesn't have them.
+     *
+     * @return snapshot (the same instance as last time, if the MDC hasn't
+     *         changed)
+     */
+    public static MDCSnapshot capture() {
+        if (LazyMDC.isUsed())
+            LazyMDC.materialize();
+        if (MDC.getMDCAdapter() instanceof LogbackMDCAdapter) {
+            Map<String, String> map = propertyMap();
+            if (map == null || map.isEmpty())
+                return EMPTY;
+            if (Threads.isVirtual())
+                return new MDCSnapshot(map);
+            MDCSnapshot last = LAST.get();
+            if (last != null && last.context == map)
+                return last;
+            MDCSnapshot snapshot = new MDCSnapshot(map);
+            LAST.set(snapshot);
+            return snapshot;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> copy = MDC.getCopyOfContextMap();
+        if (copy == null || copy.isEmpty())
+            return EMPTY;
+        return new MDCSnapshot(copy);
+    }
+
+    /**
+     * If the snapshot has no values
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return context.isEmpty();
+    }
+
+    /**
+     * The values of the snapshot
+     *
+     * @return read only map
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(context);
+    }
+
+    /**
+     * Run something with this snapshot as MDC
+     * <p>
+     * The MDC of the thread is restored afterwards
+     *
+     * @param runnable what to run
+     */
+    public void run(Runnable runnable) {
+        Map<String, String> previous = install();
+        try {
+            runnable.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Call something with this snapshot as MDC
+     * <p>
+     * The MDC of the thread is restored afterwards
+     *
+     * @param <V>      return type
+     * @param callable what to call
+     * @return the result of the callable
+     * @throws Exception as thrown by the callable
+     */
+    public <V> V call(Callable<V> callable) throws Exception {
+        Map<String, String> previous = install();
+        try {
+            return callable.call();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Wrap a task, so that it runs with this snapshot as MDC
+     *
+     * @param runnable the task
+     * @return wrapped task
+     */
+    public Runnable wrap(Runnable runnable) {
+        return () -> run(runnable);
+    }
+
+    /**
+     * Wrap a task, so that it runs with this snapshot as MDC
+     *
+     * @param <V>      return type
+     * @param callable the task
+     * @return wrapped task
+     */
+    public <V> Callable<V> wrap(Callable<V> callable) {
+        return () -> call(callable);
+    }
+
+    /**
+     * Wrap a supplier, so that it runs with this snapshot as MDC
+     * <p>
+     * This is for {@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier)}
+     *
+     * @param <T>      return type
+     * @param supplier the supplier
+     * @return wrapped supplier
+     */
+    public <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        return () -> {
+            Map<String, String> previous = install();
+            try {
+                return supplier.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap a function, so that it runs with this snapshot as MDC
+     *
+     * @param <T>      argument type
+     * @param <R>      return type
+     * @param function the function
+     * @return wrapped function
+     */
+    public <T, R> Function<T, R> wrapFunction(Function<? super T, ? extends R> function) {
+        return t -> apply((a, b) -> function.apply(a), t, null);
+    }
+
+    /**
+     * Wrap a function, so that it runs with this snapshot as MDC
+     *
+     * @param <T>      first argument type
+     * @param <U>      second argument type
+     * @param <R>      return type
+     * @param function the function
+     * @return wrapped function
+     */
+    public <T, U, R> BiFunction<T, U, R> wrapBiFunction(BiFunction<? super T, ? super U, ? extends R> function) {
+        return (t, u) -> apply(function, t, u);
+    }
+
+    /**
+     * Wrap a consumer, so that it runs with this snapshot as MDC
+     *
+     * @param <T>      argument type
+     * @param consumer the consumer
+     * @return wrapped consumer
+     */
+    public <T> Consumer<T> wrapConsumer(Consumer<? super T> consumer) {
+        return t -> apply((a, b) -> {
+                      consumer.accept(a);
+                      return null;
+                  }, t, null);
+    }
+
+    /**
+     * Wrap a consumer, so that it runs with this snapshot as MDC
+     *
+     * @param <T>      first argument type
+     * @param <U>      second argument type
+     * @param consumer the consumer
+     * @return wrapped consumer
+     */
+    public <T, U> BiConsumer<T, U> wrapBiConsumer(BiConsumer<? super T, ? super U> consumer) {
+        return (t, u) -> apply((a, b) -> {
+                           consumer.accept(a, b);
+                           return null;
+                       }, t, u);
+    }
+
+    /**
+     * Apply a function with this snapshot as MDC
+     *
+     * @param <A>      first argument type
+     * @param <B>      second argument type
+     * @param <R>      return type
+     * @param function the function
+     * @param a        first argument
+     * @param b        second argument
+     * @return function result
+     */
+    <A, B, R> R apply(BiFunction<? super A, ? super B, ? extends R> function, A a, B b) {
+        Map<String, String> previous = install();
+        try {
+            return function.apply(a, b);
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Replace the MDC of the current thread with this snapshot
+     *
+     * @return the previous MDC, for {@link #restore(Map)}
+     */
+    private Map<String, String> install() {
+        Map<String, String> previous = propertyMap();
+        if (previous == context) // Run on the submitting thread
+            return previous;
+        if (previous == null && !( MDC.getMDCAdapter() instanceof LogbackMDCAdapter )) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> copy = MDC.getCopyOfContextMap();
+            previous = copy;
+        }
+        if (context.isEmpty())
+            MDC.clear();
+        else
+            MDC.setContextMap(context);
+        return previous;
+    }
+
+    private static void restore(Map<String, String> previous) {
+        if (previous != null && previous == propertyMap())
+            return; // Unchanged
+        if (previous == null || previous.isEmpty())
+            MDC.clear();
+        else
+            MDC.setContextMap(previous);
+    }
+
+    /**
+     * The MDC map of the current thread, if logback is used
+     * <p>
+     * Logback never modifies a map, that has been read, so this is an
+     * immutable view of the MDC.
+     *
+     * @return map or null if empty or logback isn't used
+     */
+    static Map<String, String> propertyMap() {
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter instanceof LogbackMDCAdapter)
+            return ( (LogbackMDCAdapter) adapter ).getPropertyMap();
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "MDCSnapshot" + context;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MDC settings of one method parameter
+ * <p>
+ * This is the content of the {@link LogAs} and {@link GenerateTrackingId}
+ * annotations, either read from the method by reflection or from a
+ * {@link WrapperIndex} generated at compile time by the
+ * {@link MDCAnnotationProcessor}.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class ParameterSpec {
+
+    final int position;
+    final TrackingIdGenerator trackingId;
+    final String field;
+    final boolean includeNull;
+    final String path;
+    final int maxElements;
+    final int maxLength;
+    final boolean lazy;
+    final boolean perElement;
+    final int cacheSize;
+
+    /**
+     * Construct a parameter spec
+     *
+     * @param position    parameter position
+     * @param trackingId  tracking id generator or null if no
+     *                    {@link GenerateTrackingId}
+     * @param field       MDC field name or null if no {@link LogAs}
+     * @param includeNull {@link LogAs#includeNull()}
+     * @param path        {@link LogAs#path()}
+     * @param maxElements {@link LogAs#maxElements()}
+     * @param maxLength   {@link LogAs#maxLength()}
+     * @param lazy        {@link LogAs#lazy()}
+     * @param perElement  {@link LogAs#perElement()}
+     * @param cacheSize   {@link LogAs#cacheSize()}
+     */
+    ParameterSpec(int position, TrackingIdGenerator trackingId, String field, boolean includeNull, String path, int maxElements, int maxLength, boolean lazy, boolean perElement, int cacheSize) {
+        this.position = position;
+        this.trackingId = trackingId;
+        this.field = field;
+        this.includeNull = includeNull;
+        this.path = path;
+        this.maxElements = maxElements;
+        this.maxLength = maxLength;
+        this.lazy = lazy;
+        this.perElement = perElement;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Read the specs of all annotated parameters from a method
+     *
+     * @param method the method
+     * @return list of specs (in parameter order)
+     * @throws IllegalArgumentException if an annotation is misused
+     */
+    static List<ParameterSpec> of(Method method) {
+        List<ParameterSpec> specs = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0 ; i < parameters.length ; i++) {
+            Parameter parameter = parameters[i];
+            GenerateTrackingId trackingId = parameter.getAnnotation(GenerateTrackingId.class);
+            LogAs mdc = parameter.getAnnotation(LogAs.class);
+            if (trackingId == null && mdc == null)
+                continue;
+            if (trackingId != null && !parameter.getType().equals(String.class))
+                throw new IllegalArgumentException(TRACKING_ID_NOT_STRING);
+            if (mdc == null) {
+                specs.add(new ParameterSpec(i, trackingId.value(), null, false, "", -1, -1, false, false, 0));
+            } else {
+                String error = fieldNameError(mdc.value());
+                if (error != null)
+                    throw new IllegalArgumentException(error);
+                if (mdc.perElement() && mdc.lazy())
+                    throw new IllegalArgumentException(PER_ELEMENT_LAZY);
+                specs.add(new ParameterSpec(i, trackingId == null ? null : trackingId.value(),
+                                            mdc.value(), mdc.includeNull(), mdc.path(),
+                                            mdc.maxElements(), mdc.maxLength(), mdc.lazy(), mdc.perElement(), mdc.cacheSize()));
+            }
+        }
+        return specs;
+    }
+
+    static final String TRACKING_ID_NOT_STRING = "@GenerateTrackingId can only be used upon String types";
+    static final String PER_ELEMENT_LAZY = "A per element MDC field cannot be lazy";
+    static final String PER_ELEMENT_TYPE = "perElement can only be used upon Iterable, Iterator and Stream types";
+
+    /**
+     * Validate an MDC field name
+     *
+     * @param field the name from {@link LogAs#value()}
+     * @return error message or null if the name is valid
+     */
+    static String fieldNameError(String field) {
+        if (field.isEmpty())
+            return "An MDC field needs a name";
+        for (int i = 0 ; i < field.length() ; i++) {
+            char c = field.charAt(i);
+            if (!( c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' ||
+                   c == '-' || c == '_' || c == '.' ))
+                return "MDC field name contains invalid characters (a-zA-Z0-9-_.)";
+        }
+        return null;
+    }
+}
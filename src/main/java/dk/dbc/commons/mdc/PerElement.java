@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.MDC;
+
+/**
+ * Puts the value of each element of an {@link Iterable}, {@link Iterator} or
+ * {@link Stream} parameter in the MDC, when it is consumed
+ * <p>
+ * See {@link LogAs#perElement()}. The parameter is replaced by a wrapper,
+ * that delegates everything, and sets the MDC field when an element is
+ * handed out. Only the thread, that called the method, sets the MDC, and
+ * only until the method returns; an element consumed by another thread (a
+ * parallel stream is left as is), or by a wrapper that outlives the call,
+ * isn't logged.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class PerElement {
+
+    private final String field;
+    private final boolean includeNull;
+    private final MethodHandle getter;
+    private final MethodHandle converter;
+    private final boolean plain;
+
+    /**
+     * Construct a per element setter
+     *
+     * @param field       MDC field
+     * @param includeNull if a null value should be logged as "null" (or the
+     *                    field removed)
+     * @param path        path from the element to the value
+     * @param converter   handle of type {@code (Object)String}, that makes
+     *                    the value a string
+     */
+    PerElement(String field, boolean includeNull, PropertyPath path, MethodHandle converter) {
+        this.field = field;
+        this.includeNull = includeNull;
+        this.getter = path.isEmpty() ? null : path.from(MethodHandles.identity(Object.class));
+        this.converter = converter;
+        this.plain = converter == MDCInterceptor.STRING_VALUE_OF;
+    }
+
+    /**
+     * The element type of a parameter, that can be wrapped
+     *
+     * @param type        the formal type of the parameter
+     * @param genericType the generic type of the parameter
+     * @return class of the elements (Object if it cannot be determined)
+     * @throws IllegalArgumentException if the parameter cannot be wrapped
+     */
+    static Class<?> elementType(Class<?> type, Type genericType) {
+        if (type != Iterable.class && type != Iterator.class && type != Stream.class)
+            throw new IllegalArgumentException(ParameterSpec.PER_ELEMENT_TYPE);
+        if (genericType instanceof ParameterizedType) {
+            Type element = ( (ParameterizedType) genericType ).getActualTypeArguments()[0];
+            if (element instanceof WildcardType)
+                element = ( (WildcardType) element ).getUpperBounds()[0];
+            if (element instanceof ParameterizedType)
+                element = ( (ParameterizedType) element ).getRawType();
+            if (element instanceof Class)
+                return (Class<?>) element;
+        }
+        return Object.class;
+    }
+
+    /**
+     * Wrap a parameter value
+     *
+     * @param value an Iterable, Iterator or Stream (or null)
+     * @param owner the call, that the wrapper sets the MDC for
+     * @return wrapped value
+     */
+    Object wrap(Object value, Call owner) {
+        if (value instanceof Iterator)
+            return new ElementIterator<>((Iterator<?>) value, owner);
+        if (value instanceof Iterable)
+            return new ElementIterable<>((Iterable<?>) value, owner);
+        if (value instanceof Stream) {
+            Stream<?> stream = (Stream<?>) value;
+            if (stream.isParallel())
+                return stream;
+            return stream.peek(e -> set(e, owner));
+        }
+        return value;
+    }
+
+    /**
+     * Put the value of an element in the MDC
+     *
+     * @param element the element
+     * @param owner   the call, that the wrapper was made for
+     */
+    void set(Object element, Call owner) {
+        if (!owner.isActive())
+            return;
+        Object value = getter == null ? element : value(element);
+        if (value != null)
+            MDCInterceptor.putIfChanged(field, plain ? String.valueOf(value) : convert(value));
+        else if (includeNull)
+            MDCInterceptor.putIfChanged(field, "null");
+        else if (MDC.get(field) != null)
+            MDC.remove(field);
+    }
+
+    private String convert(Object value) {
+        try {
+            return (String) converter.invokeExact(value);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Object value(Object element) {
+        if (element == null)
+            return null;
+        try {
+            return (Object) getter.invokeExact(element);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * An intercepted call, that the wrappers set the MDC for
+     * <p>
+     * Made by the thread, that calls the method, and ended by it, when the
+     * method returns.
+     */
+    static final class Call {
+
+        private final Thread thread = Thread.currentThread();
+        private boolean active = true;
+
+        /**
+         * The method has returned, the wrappers no longer touch the MDC
+         */
+        void end() {
+            active = false;
+        }
+
+        private boolean isActive() {
+            return Thread.currentThread() == thread && active;
+        }
+    }
+
+    private final class ElementIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> iterator;
+        private final Call owner;
+
+        private ElementIterator(Iterator<T> iterator, Call owner) {
+            this.iterator = iterator;
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            T element = iterator.next();
+            set(element, owner);
+            return element;
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            iterator.forEachRemaining(e -> {
+                set(e, owner);
+                action.accept(e);
+            });
+        }
+    }
+
+    private final class ElementIterable<T> implements Iterable<T> {
+
+        private final Iterable<T> iterable;
+        private final Call owner;
+
+        private ElementIterable(Iterable<T> iterable, Call owner) {
+            this.iterable = iterable;
+            this.owner = owner;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new ElementIterator<>(iterable.iterator(), owner);
+        }
+
+        @Override
+        public void forEach(Consumer<? super T> action) {
+            iterable.forEach(e -> {
+                set(e, owner);
+                action.accept(e);
+            });
+        }
+
+        @Override
+        public String toString() {
+            return iterable.toString();
+        }
+    }
+}
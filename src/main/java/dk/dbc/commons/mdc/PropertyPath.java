@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A resolved property path, like {@code agency.id}, for {@link LogAs#path()}
+ * <p>
+ * Each element of the path is resolved (at deployment) to, in order of
+ * preference: a getter ({@code getId()}/{@code isId()}), an accessor
+ * ({@code id()}) or a public field ({@code id}). The getters are combined
+ * into one method handle, that returns null if any step is null.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class PropertyPath {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle IS_NULL;
+
+    static {
+        try {
+            IS_NULL = LOOKUP.findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final MethodHandle getter;
+    private final Class<?> type;
+
+    private PropertyPath(MethodHandle getter, Class<?> type) {
+        this.getter = getter;
+        this.type = type;
+    }
+
+    /**
+     * Resolve a path
+     *
+     * @param type the formal type of the parameter
+     * @param path dot separated property names (empty for the parameter
+     *             itself)
+     * @return resolved path
+     * @throws IllegalArgumentException if a property cannot be found
+     */
+    static PropertyPath of(Class<?> type, String path) {
+        if (path.isEmpty())
+            return new PropertyPath(null, type);
+        MethodHandle getter = null;
+        for (String name : path.split("\\.", -1)) {
+            if (name.isEmpty())
+                throw new IllegalArgumentException("Property path: " + path + " has an empty element");
+            if (type.isPrimitive() || type.isArray())
+                throw new IllegalArgumentException("Property path: " + path + " - " + type.getName() + " has no property: " + name);
+            MethodHandle step = property(type, name);
+            type = step.type().returnType();
+            step = step.asType(MethodType.methodType(Object.class, Object.class));
+            getter = getter == null ? step : MethodHandles.filterReturnValue(getter, nullSafe(step));
+        }
+        return new PropertyPath(getter, type);
+    }
+
+    /**
+     * The type of the value at the end of the path
+     *
+     * @return class
+     */
+    Class<?> type() {
+        return type;
+    }
+
+    /**
+     * If the path is the parameter itself
+     *
+     * @return true if there are no property lookups
+     */
+    boolean isEmpty() {
+        return getter == null;
+    }
+
+    /**
+     * Extend a handle with the property lookups
+     *
+     * @param source handle of type {@code (X)Object}, that provides the
+     *               object at the start of the path (not null)
+     * @return handle of type {@code (X)Object}, that provides the value at
+     *         the end of the path (or null if any step is null)
+     */
+    MethodHandle from(MethodHandle source) {
+        if (getter == null)
+            return source;
+        return MethodHandles.filterReturnValue(source, nullSafe(getter));
+    }
+
+    /**
+     * Guard a handle against null input
+     *
+     * @param step handle of type {@code (Object)Object}
+     * @return handle that is {@code x == null ? null : step(x)}
+     */
+    private static MethodHandle nullSafe(MethodHandle step) {
+        MethodHandle whenNull = MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object.class);
+        return MethodHandles.guardWithTest(IS_NULL, whenNull, step);
+    }
+
+    private static MethodHandle property(Class<?> type, String name) {
+        String capitalized = name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+        for (String methodName : new String[] {"get" + capitalized, "is" + capitalized, name}) {
+            try {
+                Method method = type.getMethod(methodName);
+                if (method.getReturnType() == void.class || Modifier.isStatic(method.getModifiers()))
+                    continue;
+                if (methodName.startsWith("is") && method.getReturnType() != boolean.class && !methodName.equals(name))
+                    continue;
+                return unreflect(method);
+            } catch (NoSuchMethodException ex) {
+                // Try next
+            }
+        }
+        try {
+            Field field = type.getField(name);
+            if (!Modifier.isStatic(field.getModifiers()))
+                return unreflect(field);
+        } catch (NoSuchFieldException ex) {
+            // Fall through
+        }
+        throw new IllegalArgumentException("Type: " + type.getName() + " has no property: " + name);
+    }
+
+    /**
+     * Make a handle for a public member, that might be in a non public class
+     */
+    private static MethodHandle unreflect(Member member) {
+        try {
+            return member instanceof Method ?
+                   LOOKUP.unreflect((Method) member) :
+                   LOOKUP.unreflectGetter((Field) member);
+        } catch (IllegalAccessException ex) {
+            try {
+                if (member instanceof Method) {
+                    ( (Method) member ).setAccessible(true);
+                    return LOOKUP.unreflect((Method) member);
+                } else {
+                    ( (Field) member ).setAccessible(true);
+                    return LOOKUP.unreflectGetter((Field) member);
+                }
+            } catch (IllegalAccessException | RuntimeException e) {
+                throw new IllegalArgumentException("Cannot access: " + member, e);
+            }
+        }
+    }
+}
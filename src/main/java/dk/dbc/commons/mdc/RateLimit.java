@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling and rate limit of log events by the value of one MDC field, for
+ * the {@link MDCRateLimitFilter}
+ * <p>
+ * Sampling is by the hash of the value, so for a given value either all or
+ * none of the events are kept (a sampled tracking id has all its lines).
+ * <p>
+ * The rate limit is a token bucket per value, kept as the "theoretical
+ * arrival time" of the next event (GCRA), in one {@link AtomicLong}. The
+ * buckets are in a fixed size, two way set associative table: a value can be
+ * in one of two slots, and a new value replaces the bucket, that would be
+ * full again first. An evicted value starts over with a full bucket. Lookups
+ * and updates take no locks.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class RateLimit {
+
+    static final int MAX_TABLE_SIZE = 1 << 16;
+    private static final int SAMPLE_RANGE = 1 << 24;
+
+    private final String field;
+    private final double eventsPerSecond;
+    private final int burst;
+    private final double sampleRate;
+    private final int sampleThreshold;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicReferenceArray<Bucket> table;
+    private final int mask;
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Construct a limit
+     *
+     * @param field           MDC field
+     * @param eventsPerSecond sustained events per second per value (0 is no
+     *                        rate limit)
+     * @param burst           events allowed at once per value
+     * @param sampleRate      fraction of the values, whose events are kept
+     * @param tableSize       max number of values, that are tracked (rounded
+     *                        up to a power of 2)
+     */
+    RateLimit(String field, double eventsPerSecond, int burst, double sampleRate, int tableSize) {
+        this.field = field;
+        this.eventsPerSecond = eventsPerSecond;
+        this.burst = burst;
+        this.sampleRate = sampleRate;
+        this.sampleThreshold = (int) Math.ceil(sampleRate * SAMPLE_RANGE);
+        if (eventsPerSecond > 0) {
+            this.intervalNanos = Math.max(1, (long) ( TimeUnit.SECONDS.toNanos(1) / eventsPerSecond ));
+            this.toleranceNanos = intervalNanos * ( burst - 1 );
+            int capacity = Integer.highestOneBit(Math.max(2, tableSize - 1)) << 1;
+            this.table = new AtomicReferenceArray<>(Math.min(capacity, MAX_TABLE_SIZE));
+            this.mask = table.length() - 1;
+        } else {
+            this.intervalNanos = 0;
+            this.toleranceNanos = 0;
+            this.table = null;
+            this.mask = 0;
+        }
+    }
+
+    String field() {
+        return field;
+    }
+
+    /**
+     * Check if an event should be logged
+     *
+     * @param value   the value of the field
+     * @param nowNanos {@link System#nanoTime()}
+     * @return if it should be logged
+     */
+    boolean allow(String value, long nowNanos) {
+        int hash = value.hashCode();
+        hash ^= hash >>> 16;
+        if (sampleThreshold < SAMPLE_RANGE && ( ( hash * 0x9e3779b9 ) >>> 8 ) >= sampleThreshold) {
+            sampledOut.increment();
+            return false;
+        }
+        if (table != null && !bucket(value, hash, nowNanos).acquire(nowNanos, intervalNanos, toleranceNanos)) {
+            rateLimited.increment();
+            return false;
+        }
+        passed.increment();
+        return true;
+    }
+
+    private Bucket bucket(String value, int hash, long nowNanos) {
+        int first = hash & mask;
+        int second = first ^ 1;
+        Bucket a = table.get(first);
+        if (a != null && a.value.equals(value))
+            return a;
+        Bucket b = table.get(second);
+        if (b != null && b.value.equals(value))
+            return b;
+        int slot;
+        Bucket victim;
+        if (a == null || b != null && a.get() - b.get() <= 0) {
+            slot = first;
+            victim = a;
+        } else {
+            slot = second;
+            victim = b;
+        }
+        Bucket bucket = new Bucket(value, nowNanos);
+        if (table.compareAndSet(slot, victim, bucket)) {
+            if (victim != null)
+                evictions.increment();
+            return bucket;
+        }
+        // Lost a race, most likely to an event with the same value
+        Bucket current = table.get(slot);
+        return current != null && current.value.equals(value) ? current : bucket;
+    }
+
+    /**
+     * Statistics of the limit
+     *
+     * @return snapshot
+     */
+    MDCMetrics.RateLimitSnapshot snapshot() {
+        int values = 0;
+        if (table != null) {
+            for (int i = 0 ; i < table.length() ; i++) {
+                if (table.get(i) != null)
+                    values++;
+            }
+        }
+        return new MDCMetrics.RateLimitSnapshot(field, eventsPerSecond, burst, sampleRate, values,
+                                                passed.sum(), sampledOut.sum(), rateLimited.sum(), evictions.sum());
+    }
+
+    /**
+     * Token bucket of one value; the content is the time the bucket is full
+     * again
+     */
+    private static final class Bucket extends AtomicLong {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String value;
+
+        private Bucket(String value, long nowNanos) {
+            super(nowNanos);
+            this.value = value;
+        }
+
+        private boolean acquire(long nowNanos, long intervalNanos, long toleranceNanos) {
+            for (;;) {
+                long full = get();
+                long start = full - nowNanos > 0 ? full : nowNanos;
+                if (start - nowNanos > toleranceNanos)
+                    return false;
+                if (compareAndSet(full, start + intervalNanos))
+                    return true;
+            }
+        }
+    }
+}
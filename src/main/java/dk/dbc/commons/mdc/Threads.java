@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Thread helpers, for features of newer Java versions
+ * <p>
+ * This library targets Java 11, but may run on a JVM with virtual threads.
+ * Thread locals used as caches then cost memory for every (short lived)
+ * virtual thread, so they're bypassed on virtual threads.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class Threads {
+
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private Threads() {
+    }
+
+    /**
+     * If the current thread is a virtual thread
+     *
+     * @return true if Thread.isVirtual() exists and says so
+     */
+    static boolean isVirtual() {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            return null;
+        }
+    }
+}
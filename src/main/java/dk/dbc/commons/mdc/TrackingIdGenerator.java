@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategies for generating tracking ids for {@link GenerateTrackingId}
+ * <p>
+ * The global default (used by {@link #DEFAULT}) is selected by the system
+ * property {@value #PROPERTY}, and is {@link #RANDOM_UUID} if not set.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public enum TrackingIdGenerator {
+
+    /**
+     * Use the globally configured generator
+     */
+    DEFAULT {
+        @Override
+        public String generate() {
+            return configured().generate();
+        }
+    },
+    /**
+     * {@link UUID#randomUUID()} - a version 4 uuid from a shared
+     * {@link SecureRandom}
+     * <p>
+     * This can suffer from contention and from blocking while waiting for
+     * entropy.
+     */
+    RANDOM_UUID {
+        @Override
+        public String generate() {
+            return UUID.randomUUID().toString();
+        }
+    },
+    /**
+     * A version 4 uuid from {@link ThreadLocalRandom}
+     * <p>
+     * Same format as {@link #RANDOM_UUID}, without contention, but not
+     * cryptographically strong.
+     */
+    FAST_UUID {
+        @Override
+        public String generate() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long msb = random.nextLong() & ~0xf000L | 0x4000L;
+            return new UUID(msb, variant(random.nextLong())).toString();
+        }
+    },
+    /**
+     * A version 7 uuid, the first 48 bits are milliseconds since epoch, the
+     * rest is from {@link ThreadLocalRandom}
+     * <p>
+     * These sort (roughly) by creation time, which makes them index well.
+     */
+    TIME_ORDERED_UUID {
+        @Override
+        public String generate() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long msb = System.currentTimeMillis() << 16 | 0x7000L | random.nextInt() & 0x0fffL;
+            return new UUID(msb, variant(random.nextLong())).toString();
+        }
+    },
+    /**
+     * A compact id: random node id (per JVM) and a counter in hex, ie.:
+     * {@code 3fa85f64-1c}
+     * <p>
+     * Each thread takes blocks of counter values, so the shared counter is
+     * only touched once every 1024 ids. Virtual threads take one value at a
+     * time, rather than keeping a block per thread.
+     */
+    COUNTER {
+        @Override
+        public String generate() {
+            if (Threads.isVirtual())
+                return Counter.NODE + Long.toHexString(Counter.NEXT_BLOCK.getAndIncrement());
+            long[] block = Counter.BLOCK.get();
+            if (block[0] == block[1]) {
+                block[0] = Counter.NEXT_BLOCK.getAndAdd(COUNTER_BLOCK_SIZE);
+                block[1] = block[0] + COUNTER_BLOCK_SIZE;
+            }
+            return Counter.NODE + Long.toHexString(block[0]++);
+        }
+    };
+
+    /**
+     * System property that selects the generator used by {@link #DEFAULT}
+     */
+    public static final String PROPERTY = "dk.dbc.commons.mdc.trackingId";
+
+    private static final long COUNTER_BLOCK_SIZE = 1024;
+
+    /**
+     * Make a tracking id
+     *
+     * @return new tracking id
+     */
+    public abstract String generate();
+
+    /**
+     * Resolve {@link #DEFAULT} to the configured generator
+     *
+     * @return a concrete generator
+     */
+    public TrackingIdGenerator resolve() {
+        return this == DEFAULT ? configured() : this;
+    }
+
+    /**
+     * Get the globally configured generator
+     *
+     * @return generator from the system property {@value #PROPERTY}, or
+     *         {@link #RANDOM_UUID} if not set
+     */
+    public static TrackingIdGenerator configured() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null || name.isEmpty())
+            return RANDOM_UUID;
+        TrackingIdGenerator generator = valueOf(name.toUpperCase(Locale.ROOT));
+        return generator == DEFAULT ? RANDOM_UUID : generator;
+    }
+
+    /**
+     * Set the IETF variant bits (10xx) of the lower half of an uuid
+     *
+     * @param lsb random bits
+     * @return lower 64 bits of an uuid
+     */
+    private static long variant(long lsb) {
+        return lsb & 0x3fffffffffffffffL | 0x8000000000000000L;
+    }
+
+    /**
+     * Lazy holder for {@link #COUNTER} state
+     */
+    private static final class Counter {
+
+        private static final String NODE = String.format(Locale.ROOT, "%08x-", new SecureRandom().nextInt());
+        private static final AtomicLong NEXT_BLOCK = new AtomicLong();
+        private static final ThreadLocal<long[]> BLOCK = ThreadLocal.withInitial(() -> new long[2]);
+    }
+}
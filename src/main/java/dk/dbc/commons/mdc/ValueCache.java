@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the string forms of values, for {@link LogAs#cacheSize()}
+ * <p>
+ * A direct mapped hash table: a value has one slot, and a miss replaces what
+ * is there. Lookups take no locks, and a hit doesn't allocate. Entries are
+ * immutable, so a racing miss at worst replaces an entry with an equal one.
+ * <p>
+ * Values are matched by {@link Object#equals(Object)}, so this is only
+ * useful for values, whose string form doesn't change while they're equal.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class ValueCache {
+
+    private static final MethodHandle GET;
+
+    static {
+        try {
+            GET = MethodHandles.lookup().findVirtual(ValueCache.class, "get", MethodType.methodType(String.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final String method;
+    private final String field;
+    private final MethodHandle converter;
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Construct a cache
+     *
+     * @param method    name of the method (for statistics)
+     * @param field     MDC field (for statistics)
+     * @param size      max number of entries (rounded up to a power of 2)
+     * @param converter handle of type {@code (Object)String}, for misses
+     */
+    ValueCache(String method, String field, int size, MethodHandle converter) {
+        this.method = method;
+        this.field = field;
+        this.converter = converter;
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.table = new AtomicReferenceArray<>(Math.min(capacity, 1 << 16));
+        this.mask = table.length() - 1;
+    }
+
+    /**
+     * A converter, that uses this cache
+     *
+     * @return handle of type {@code (Object)String}
+     */
+    MethodHandle converter() {
+        return GET.bindTo(this);
+    }
+
+    /**
+     * Get the string form of a value
+     *
+     * @param value the value (not null)
+     * @return string
+     */
+    String get(Object value) {
+        int hash = value.hashCode();
+        int index = ( hash ^ hash >>> 16 ) & mask;
+        Entry entry = table.get(index);
+        if (entry != null && entry.value.equals(value)) {
+            hits.increment();
+            return entry.string;
+        }
+        misses.increment();
+        String string = convert(value);
+        table.lazySet(index, new Entry(value, string));
+        return string;
+    }
+
+    private String convert(Object value) {
+        try {
+            return (String) converter.invokeExact(value);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Statistics of the cache
+     *
+     * @return snapshot
+     */
+    MDCMetrics.CacheSnapshot snapshot() {
+        int size = 0;
+        for (int i = 0 ; i < table.length() ; i++) {
+            if (table.get(i) != null)
+                size++;
+        }
+        return new MDCMetrics.CacheSnapshot(method, field, table.length(), size, hits.sum(), misses.sum());
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final String string;
+
+        private Entry(Object value, String string) {
+            this.value = value;
+            this.string = string;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * String forms of values, that don't need to be built on every call
+ * <p>
+ * Enum values are converted once per constant, when the method is wrapped,
+ * and small integers (-128 to 1023) come from a shared table. Both are used
+ * automatically, when the formal type of the value is an enum or an integral
+ * type.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class ValueStrings {
+
+    static final int SMALL_MIN = -128;
+    static final int SMALL_MAX = 1023;
+    private static final int SMALL_MAX_LENGTH = 4;
+
+    private static final MethodHandle ENUM_STRING;
+    private static final MethodHandle SMALL_INTEGER;
+    private static final MethodHandle BOUNDED_SMALL_INTEGER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ENUM_STRING = lookup.findStatic(ValueStrings.class, "enumString", MethodType.methodType(String.class, String[].class, Object.class));
+            SMALL_INTEGER = lookup.findStatic(ValueStrings.class, "smallInteger", MethodType.methodType(String.class, Object.class));
+            BOUNDED_SMALL_INTEGER = lookup.findStatic(ValueStrings.class, "smallInteger", MethodType.methodType(String.class, BoundedFormatter.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private ValueStrings() {
+    }
+
+    /**
+     * Make a converter without allocation, if the type allows it
+     *
+     * @param type      the formal type of the value
+     * @param formatter limits for the string representation of the value
+     * @return handle of type {@code (Object)String} or null if the type has
+     *         no built-in conversion
+     */
+    static MethodHandle converter(Class<?> type, BoundedFormatter formatter) {
+        if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            String[] strings = new String[constants.length];
+            for (int i = 0 ; i < constants.length ; i++) {
+                strings[i] = formatter.format(constants[i]);
+            }
+            return MethodHandles.insertArguments(ENUM_STRING, 0, (Object) strings);
+        }
+        // Values outside the table still have to respect the length limit
+        if (isIntegral(type) && formatter.maxLength() >= SMALL_MAX_LENGTH)
+            return formatter.maxLength() == BoundedFormatter.UNLIMITED ?
+                   SMALL_INTEGER :
+                   BOUNDED_SMALL_INTEGER.bindTo(formatter);
+        return null;
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type == int.class || type == Integer.class ||
+               type == long.class || type == Long.class ||
+               type == short.class || type == Short.class ||
+               type == byte.class || type == Byte.class;
+    }
+
+    private static String enumString(String[] strings, Object value) {
+        return strings[( (Enum<?>) value ).ordinal()];
+    }
+
+    private static String smallInteger(Object value) {
+        long number = ( (Number) value ).longValue();
+        if (number >= SMALL_MIN && number <= SMALL_MAX)
+            return SmallIntegers.STRINGS[(int) number - SMALL_MIN];
+        return Long.toString(number);
+    }
+
+    private static String smallInteger(BoundedFormatter formatter, Object value) {
+        long number = ( (Number) value ).longValue();
+        if (number >= SMALL_MIN && number <= SMALL_MAX)
+            return SmallIntegers.STRINGS[(int) number - SMALL_MIN];
+        return formatter.format(value);
+    }
+
+    /**
+     * Convert an integral value, without allocation if it is small
+     *
+     * @param number    the value
+     * @param formatter limits for the string representation of the value
+     * @return string
+     */
+    static String integer(long number, BoundedFormatter formatter) {
+        if (number >= SMALL_MIN && number <= SMALL_MAX && formatter.maxLength() >= SMALL_MAX_LENGTH)
+            return SmallIntegers.STRINGS[(int) number - SMALL_MIN];
+        if (formatter.maxLength() == BoundedFormatter.UNLIMITED)
+            return Long.toString(number);
+        return formatter.format(number);
+    }
+
+    /**
+     * Holder, so the table is only built when an integral value is logged
+     */
+    private static final class SmallIntegers {
+
+        private static final String[] STRINGS = new String[SMALL_MAX - SMALL_MIN + 1];
+
+        static {
+            for (int i = SMALL_MIN ; i <= SMALL_MAX ; i++) {
+                STRINGS[i - SMALL_MIN] = Integer.toString(i);
+            }
+        }
+    }
+}
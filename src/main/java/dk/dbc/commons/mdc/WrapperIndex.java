@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of annotated methods, generated at compile time by the
+ * {@link MDCAnnotationProcessor}
+ * <p>
+ * The index is a text resource ({@value #RESOURCE}), with a version header
+ * and one tab separated line per annotated parameter:
+ * <pre>
+ * class  method  parameter-types  position  tracking-id  field  include-null  path  max-elements  max-length  lazy  per-element  cache-size
+ * </pre>
+ * Parameter types are comma separated {@link Class#getName()} names, and
+ * tracking-id/field are empty if the annotation isn't present.
+ * <p>
+ * The annotations have been validated when the index was made, so a method
+ * found in the index is wrapped without reading its annotations.
+ * Methods that aren't in the index (or an index of an unknown version) fall
+ * back to reflection.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class WrapperIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(WrapperIndex.class);
+
+    static final String RESOURCE = "META-INF/dbc-commons-mdc/wrapper-index";
+    static final String HEADER = "#dbc-commons-mdc-wrapper-index 3";
+    private static final int COLUMNS = 13;
+
+    static final WrapperIndex EMPTY = new WrapperIndex(Collections.emptyMap());
+
+    private final Map<String, List<ParameterSpec>> methods;
+
+    WrapperIndex(Map<String, List<ParameterSpec>> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Load all indexes visible to a classloader
+     *
+     * @param classLoader where to look for {@value #RESOURCE}
+     * @return index (empty if none could be loaded)
+     */
+    static WrapperIndex load(ClassLoader classLoader) {
+        if (classLoader == null)
+            return EMPTY;
+        Map<String, List<ParameterSpec>> methods = new HashMap<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                try (Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)) {
+                    Map<String, List<ParameterSpec>> parsed = parse(reader);
+                    if (parsed == null)
+                        log.warn("Ignoring wrapper index: {} - unknown version", url);
+                    else
+                        methods.putAll(parsed);
+                } catch (IOException | RuntimeException ex) {
+                    log.warn("Ignoring wrapper index: {} - {}", url, ex.getMessage());
+                    log.debug("Ignoring wrapper index: {} - {}", url, ex.getMessage(), ex);
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Cannot look up wrapper indexes: {}", ex.getMessage());
+            log.debug("Cannot look up wrapper indexes: {}", ex.getMessage(), ex);
+        }
+        if (methods.isEmpty())
+            return EMPTY;
+        log.info("Loaded wrapper index with {} methods", methods.size());
+        return new WrapperIndex(methods);
+    }
+
+    /**
+     * Parse an index
+     *
+     * @param reader where to read it from
+     * @return method key to specs map or null if the header is wrong
+     * @throws IOException              if the index cannot be read
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    static Map<String, List<ParameterSpec>> parse(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        if (!HEADER.equals(lines.readLine()))
+            return null;
+        Map<String, List<ParameterSpec>> methods = new HashMap<>();
+        for (String line = lines.readLine() ; line != null ; line = lines.readLine()) {
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split("\t", -1);
+            if (parts.length != COLUMNS)
+                throw new IllegalArgumentException("Malformed line: " + line);
+            ParameterSpec spec = new ParameterSpec(Integer.parseInt(parts[3]),
+                                                   parts[4].isEmpty() ? null : TrackingIdGenerator.valueOf(parts[4]),
+                                                   parts[5].isEmpty() ? null : parts[5],
+                                                   Boolean.parseBoolean(parts[6]),
+                                                   parts[7],
+                                                   Integer.parseInt(parts[8]),
+                                                   Integer.parseInt(parts[9]),
+                                                   Boolean.parseBoolean(parts[10]),
+                                                   Boolean.parseBoolean(parts[11]),
+                                                   Integer.parseInt(parts[12]));
+            methods.computeIfAbsent(key(parts[0], parts[1], parts[2]), k -> new ArrayList<>())
+                    .add(spec);
+        }
+        return methods;
+    }
+
+    /**
+     * Format an index line
+     *
+     * @param className  binary name of the declaring class
+     * @param methodName name of the method
+     * @param types      comma separated parameter type names
+     * @param spec       the parameter
+     * @return line (without line separator)
+     */
+    static String line(String className, String methodName, String types, ParameterSpec spec) {
+        return String.join("\t",
+                           className, methodName, types,
+                           String.valueOf(spec.position),
+                           spec.trackingId == null ? "" : spec.trackingId.name(),
+                           spec.field == null ? "" : spec.field,
+                           String.valueOf(spec.includeNull),
+                           spec.path,
+                           String.valueOf(spec.maxElements),
+                           String.valueOf(spec.maxLength),
+                           String.valueOf(spec.lazy),
+                           String.valueOf(spec.perElement),
+                           String.valueOf(spec.cacheSize));
+    }
+
+    /**
+     * Look up a method
+     *
+     * @param method the method
+     * @return specs of the annotated parameters, or null if the method isn't
+     *         in the index
+     */
+    List<ParameterSpec> get(Method method) {
+        if (methods.isEmpty())
+            return null;
+        StringBuilder types = new StringBuilder();
+        for (Class<?> type : method.getParameterTypes()) {
+            if (types.length() != 0)
+                types.append(',');
+            types.append(type.getName());
+        }
+        return methods.get(key(method.getDeclaringClass().getName(), method.getName(), types.toString()));
+    }
+
+    int size() {
+        return methods.size();
+    }
+
+    private static String key(String className, String methodName, String types) {
+        return className + '#' + methodName + '(' + types + ')';
+    }
+}
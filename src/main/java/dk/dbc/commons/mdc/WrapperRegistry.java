@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of mdc
+ *
+ * mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable lookup table from method to {@link Invoker}
+ * <p>
+ * Open addressing with linear probing. Keys are compared by identity first,
+ * and only when that fails by {@link Method#equals(java.lang.Object)}, since
+ * the container isn't required to hand out the same {@link Method} instance
+ * as the one seen at deployment.
+ * <p>
+ * Being immutable, an instance can be published through a volatile field,
+ * and read without any locking.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+final class WrapperRegistry {
+
+    static final WrapperRegistry EMPTY = new WrapperRegistry(new Method[1], new Invoker[1], 0);
+
+    private final Method[] keys;
+    private final Invoker[] values;
+    private final int size;
+
+    private WrapperRegistry(Method[] keys, Invoker[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Lookup the invoker for a method
+     *
+     * @param method         the method that is called
+     * @param defaultInvoker what to return if the method isn't registered
+     * @return invoker
+     */
+    Invoker get(Method method, Invoker defaultInvoker) {
+        Method[] k = keys;
+        int mask = k.length - 1;
+        for (int i = index(method, mask) ;; i = ( i + 1 ) & mask) {
+            Method key = k[i];
+            if (key == method)
+                return values[i];
+            if (key == null)
+                return defaultInvoker;
+            if (key.equals(method))
+                return values[i];
+        }
+    }
+
+    /**
+     * Number of registered methods
+     *
+     * @return count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Make a new registry with the content of this and some more invokers
+     * <p>
+     * Invokers from the argument replace those from this for the same method.
+     *
+     * @param wrappers the invokers to add
+     * @return new registry
+     */
+    WrapperRegistry with(Map<Method, Invoker> wrappers) {
+        if (wrappers.isEmpty())
+            return this;
+        int capacity = capacity(size + wrappers.size());
+        Method[] k = new Method[capacity];
+        Invoker[] v = new Invoker[capacity];
+        int count = 0;
+        for (int i = 0 ; i < keys.length ; i++) {
+            if (keys[i] != null)
+                count += insert(k, v, keys[i], values[i]);
+        }
+        for (Map.Entry<Method, Invoker> entry : wrappers.entrySet()) {
+            count += insert(k, v, entry.getKey(), entry.getValue());
+        }
+        return new WrapperRegistry(k, v, count);
+    }
+
+    /**
+     * Make a new registry with the content of this except some methods
+     * <p>
+     * This is used when a deployment is shut down, so that the registry
+     * doesn't keep its classes (and classloader) alive.
+     *
+     * @param methods the methods to remove
+     * @return new registry
+     */
+    WrapperRegistry without(Collection<Method> methods) {
+        if (methods.isEmpty() || size == 0)
+            return this;
+        Set<Method> removed = new HashSet<>(methods);
+        int capacity = capacity(size);
+        Method[] k = new Method[capacity];
+        Invoker[] v = new Invoker[capacity];
+        int count = 0;
+        for (int i = 0 ; i < keys.length ; i++) {
+            if (keys[i] != null && !removed.contains(keys[i]))
+                count += insert(k, v, keys[i], values[i]);
+        }
+        if (count == 0)
+            return EMPTY;
+        return new WrapperRegistry(k, v, count);
+    }
+
+    /**
+     * Table size for a number of entries, at most half full
+     */
+    private static int capacity(int entries) {
+        return Integer.highestOneBit(entries * 2 + 1) * 2;
+    }
+
+    /**
+     * Put a key/value into a table
+     *
+     * @return 1 if the key is new, 0 if it replaced an existing value
+     */
+    private static int insert(Method[] k, Invoker[] v, Method method, Invoker invoker) {
+        int mask = k.length - 1;
+        for (int i = index(method, mask) ;; i = ( i + 1 ) & mask) {
+            if (k[i] == null) {
+                k[i] = method;
+                v[i] = invoker;
+                return 1;
+            }
+            if (k[i].equals(method)) {
+                v[i] = invoker;
+                return 0;
+            }
+        }
+    }
+
+    private static int index(Method method, int mask) {
+        int h = method.hashCode();
+        return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.CompletionCallback;
+import jakarta.ws.rs.container.TimeoutHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class AsyncInterceptionTest {
+
+    @Test
+    public void testCompletionStage() throws Exception {
+        System.out.println("testCompletionStage");
+
+        Method method = Beans.class.getMethod("stage", String.class);
+        Invoker invoker = wrap(method);
+
+        MDC.clear();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        @SuppressWarnings("unchecked")
+        CompletionStage<String> stage = (CompletionStage<String>) invoker.call(new TestInvocationContext(method, () -> source, "abc"));
+        assertThat(MDC.get("id"), nullValue());
+
+        CompletableFuture<String> result = stage
+                .thenApply(v -> v + ":" + MDC.get("id"))
+                .thenApplyAsync(v -> v + ":" + MDC.get("id"))
+                .toCompletableFuture();
+        Thread thread = new Thread(() -> source.complete("value"));
+        thread.start();
+        assertThat(result.get(1, TimeUnit.SECONDS), is("value:abc:abc"));
+
+        // Completed stage runs callback on this thread, with the MDC restored afterwards
+        MDC.put("id", "caller");
+        assertThat(stage.thenApply(v -> MDC.get("id")).toCompletableFuture().get(), is("abc"));
+        assertThat(MDC.get("id"), is("caller"));
+        MDC.clear();
+    }
+
+    @Test
+    public void testAsyncResponse() throws Exception {
+        System.out.println("testAsyncResponse");
+
+        Method method = Beans.class.getMethod("suspended", String.class, AsyncResponse.class);
+        Invoker invoker = wrap(method);
+
+        MDC.clear();
+        RecordingAsyncResponse response = new RecordingAsyncResponse();
+        List<AsyncResponse> given = new ArrayList<>();
+        TestInvocationContext[] ic = new TestInvocationContext[1];
+        ic[0] = new TestInvocationContext(method, () -> {
+            given.add((AsyncResponse) ic[0].getParameters()[1]);
+            return null;
+        }, "abc", response);
+        invoker.call(ic[0]);
+        assertThat(MDC.get("id"), nullValue());
+        assertThat(given.get(0), not(sameInstance(response)));
+
+        List<String> completed = new ArrayList<>();
+        given.get(0).register((CompletionCallback) t -> completed.add(MDC.get("id")));
+        Thread thread = new Thread(() -> given.get(0).resume("value"));
+        thread.start();
+        thread.join();
+        assertThat(response.resumedWith, is("abc"));
+        response.callbacks.forEach(c -> ( (CompletionCallback) c ).onComplete(null));
+        assertThat(completed, contains("abc"));
+        assertThat(MDC.get("id"), nullValue());
+    }
+
+    @Test
+    public void testNotAsync() throws Exception {
+        System.out.println("testNotAsync");
+
+        assertThat(MDCInterceptor.asyncProceed(Beans.class.getMethod("plain", String.class)), nullValue());
+    }
+
+    private static Invoker wrap(Method method) {
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, wrappers), nullValue());
+        return wrappers.get(method);
+    }
+
+    public static class Beans {
+
+        public CompletionStage<String> stage(@LogAs("id") String id) {
+            return null;
+        }
+
+        public void suspended(@LogAs("id") String id, AsyncResponse response) {
+        }
+
+        public String plain(@LogAs("id") String id) {
+            return id;
+        }
+    }
+
+    private static class RecordingAsyncResponse implements AsyncResponse {
+
+        private String resumedWith;
+        private final List<Object> callbacks = new ArrayList<>();
+
+        @Override
+        public boolean resume(Object response) {
+            resumedWith = MDC.get("id");
+            return true;
+        }
+
+        @Override
+        public boolean resume(Throwable response) {
+            return resume((Object) response);
+        }
+
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(int retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter) {
+            return false;
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            return List.of();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            return Map.of();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            callbacks.add(callback);
+            return List.of(CompletionCallback.class);
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            register(callback);
+            for (Object c : callbacks) {
+                register(c);
+            }
+            return Map.of();
+        }
+    }
+}
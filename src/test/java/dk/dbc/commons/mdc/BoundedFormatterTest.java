@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static dk.dbc.commons.mdc.BoundedFormatter.UNLIMITED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class BoundedFormatterTest {
+
+    @Test
+    public void testUnlimitedIsLikeArrays() throws Exception {
+        System.out.println("testUnlimitedIsLikeArrays");
+
+        BoundedFormatter formatter = new BoundedFormatter(UNLIMITED, UNLIMITED);
+        long[] longs = new long[] {1, 2, 3};
+        assertThat(formatter.format(longs), is(Arrays.toString(longs)));
+        Object[] nested = new Object[] {null, new int[] {1, 2}, new String[] {"a", "b"}, 'c', new boolean[] {true}};
+        assertThat(formatter.format(nested), is(Arrays.deepToString(nested)));
+        Object[] self = new Object[] {1, null};
+        self[1] = self;
+        assertThat(formatter.format(self), is(Arrays.deepToString(self)));
+        List<Object> list = List.of(1, "a", List.of(2, 3));
+        assertThat(formatter.format(list), is(list.toString()));
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        assertThat(formatter.format(map), is(map.toString()));
+    }
+
+    @Test
+    public void testMaxElements() throws Exception {
+        System.out.println("testMaxElements");
+
+        BoundedFormatter formatter = new BoundedFormatter(3, UNLIMITED);
+        long[] ids = new long[100_000];
+        Arrays.setAll(ids, i -> i);
+        assertThat(formatter.format(ids), is("[0, 1, 2, …(+99997 more)]"));
+        assertThat(formatter.format(new int[] {1, 2, 3}), is("[1, 2, 3]"));
+        assertThat(formatter.format(new int[][] {{1, 2, 3, 4}, {5}}), is("[[1, 2, 3, …(+1 more)], [5]]"));
+
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0 ; i < 10 ; i++) {
+            list.add(i);
+        }
+        assertThat(formatter.format(list), is("[0, 1, 2, …(+7 more)]"));
+        Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        map.put("d", 4);
+        assertThat(formatter.format(map), is("{a=1, b=2, c=3, …(+1 more)}"));
+        assertThat(new BoundedFormatter(0, UNLIMITED).format(list), is("[…(+10 more)]"));
+    }
+
+    @Test
+    public void testMaxLength() throws Exception {
+        System.out.println("testMaxLength");
+
+        BoundedFormatter formatter = new BoundedFormatter(UNLIMITED, 10);
+        long[] ids = new long[100_000];
+        Arrays.setAll(ids, i -> i);
+        assertThat(formatter.format(ids), is("[0, 1, 2, …(+99997 more)"));
+        assertThat(formatter.format("abcdefghijklmnop"), is("abcdefghij…(+6 more)"));
+        assertThat(formatter.format("abcdefghij"), is("abcdefghij"));
+        assertThat(formatter.format(new String[] {"abcdefghijklmnop"}), is("[abcdefghi…(+1 more)"));
+        assertThat(formatter.format(new int[] {1, 2}), is("[1, 2]"));
+        // Buffer is reused
+        assertThat(formatter.format(new int[] {3}), is("[3]"));
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        System.out.println("testLimit");
+
+        try {
+            System.clearProperty(BoundedFormatter.MAX_LENGTH_PROPERTY);
+            assertThat(BoundedFormatter.limit(-1, BoundedFormatter.MAX_LENGTH_PROPERTY), is(UNLIMITED));
+            assertThat(BoundedFormatter.limit(5, BoundedFormatter.MAX_LENGTH_PROPERTY), is(5));
+            System.setProperty(BoundedFormatter.MAX_LENGTH_PROPERTY, "100");
+            assertThat(BoundedFormatter.limit(-1, BoundedFormatter.MAX_LENGTH_PROPERTY), is(100));
+            assertThat(BoundedFormatter.limit(5, BoundedFormatter.MAX_LENGTH_PROPERTY), is(5));
+        } finally {
+            System.clearProperty(BoundedFormatter.MAX_LENGTH_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import dk.dbc.commons.mdc.MDCInterceptor.RestoreMode;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import static dk.dbc.commons.mdc.MDCInterceptor.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class LazyMDCTest {
+
+    private static final BoundedFormatter UNLIMITED = new BoundedFormatter(BoundedFormatter.UNLIMITED, BoundedFormatter.UNLIMITED);
+    private static final PropertyPath OBJECT = PropertyPath.of(Object.class, "");
+
+    @Test
+    public void testTurboFilterInstall() throws Exception {
+        System.out.println("testTurboFilterInstall");
+
+        LoggerContext context = new LoggerContext();
+        TurboFilter accept = new TurboFilter() {
+            @Override
+            public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+                return FilterReply.ACCEPT;
+            }
+        };
+        context.addTurboFilter(accept);
+        LazyMDCTurboFilter.install(context);
+        LazyMDCTurboFilter.install(context); // Another deployment
+        assertThat(context.getTurboFilterList().size(), is(2));
+        assertThat(context.getTurboFilterList().get(0), instanceOf(LazyMDCTurboFilter.class));
+        assertThat(context.getTurboFilterList().get(1), sameInstance(accept));
+
+        LazyMDCTurboFilter.uninstall();
+        assertThat(context.getTurboFilterList().size(), is(2));
+        LazyMDCTurboFilter.uninstall();
+        assertThat(context.getTurboFilterList().size(), is(1));
+        assertThat(context.getTurboFilterList().get(0), sameInstance(accept));
+    }
+
+    @Test
+    public void testRenderedOnlyWhenMaterialized() throws Exception {
+        System.out.println("testRenderedOnlyWhenMaterialized");
+
+        AtomicInteger conversions = new AtomicInteger();
+        Object value = new Object() {
+            @Override
+            public String toString() {
+                return "value-" + conversions.incrementAndGet();
+            }
+        };
+        Invoker invoker = lazyInvoker("a", RestoreMode.FULL);
+        MDC.clear();
+        invoker.call(new TestInvocationContext(null, () -> {
+            assertThat(MDC.get("a"), is(LazyMDC.PLACEHOLDER));
+            assertThat(conversions.get(), is(0));
+            LazyMDC.materialize();
+            assertThat(MDC.get("a"), is("value-1"));
+            LazyMDC.materialize();
+            assertThat(MDC.get("a"), is("value-1"));
+            return null;
+        }, value));
+        assertThat(MDC.get("a"), nullValue());
+        assertThat(LazyMDC.current().mark(), is(0));
+
+        invoker.call(new TestInvocationContext(null, () -> null, value));
+        assertThat(conversions.get(), is(1));
+    }
+
+    @Test
+    public void testNestedSameField() throws Exception {
+        System.out.println("testNestedSameField");
+
+        Invoker lazy = lazyInvoker("a", RestoreMode.DELTA);
+        Invoker eager = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))),
+                                    new String[] {"a"}, RestoreMode.FULL);
+        MDC.clear();
+        lazy.call(new TestInvocationContext(null, () -> {
+            eager.call(new TestInvocationContext(null, () -> {
+                LazyMDC.materialize();
+                assertThat(MDC.get("a"), is("eager"));
+                return null;
+            }, "eager"));
+            lazy.call(new TestInvocationContext(null, () -> {
+                LazyMDC.materialize();
+                assertThat(MDC.get("a"), is("inner"));
+                return null;
+            }, "inner"));
+            LazyMDC.materialize();
+            assertThat(MDC.get("a"), is("outer"));
+            return null;
+        }, "outer"));
+        assertThat(MDC.get("a"), nullValue());
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        System.out.println("testNull");
+
+        Invoker invoker = makeLazyInvoker(makeInvoker(combineSetters(List.of(lazyMdcSetter(0, "a", true, OBJECT, UNLIMITED),
+                                                                             lazyMdcSetter(1, "b", false, OBJECT, UNLIMITED))),
+                                                      new String[] {"a", "b"}, RestoreMode.DELTA));
+        MDC.clear();
+        invoker.call(new TestInvocationContext(null, () -> {
+            assertThat(MDC.get("a"), is("null"));
+            assertThat(MDC.get("b"), nullValue());
+            return null;
+        }, null, null));
+    }
+
+    private static Invoker lazyInvoker(String field, RestoreMode mode) {
+        return makeLazyInvoker(makeInvoker(combineSetters(List.of(lazyMdcSetter(0, field, false, OBJECT, UNLIMITED))),
+                                           new String[] {field}, mode));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bytes allocated per call of the interceptor, for each shape of wrapped
+ * method, with an empty and a populated MDC
+ * <p>
+ * The budgets are the measured values with some headroom. If a change makes
+ * a test fail, the interceptor allocates more per call than it used to; if a
+ * change allocates less, lower the budget.
+ * <p>
+ * Calls are repeated until the JIT has settled, and the lowest of a number
+ * of rounds is used, so a slow machine doesn't fail the tests. The budgets
+ * are for a 64 bit JVM with compressed oops (the default below 32G heap).
+ * <p>
+ * With a full restore most of the cost is logback copying the MDC map on the
+ * first put after the snapshot, so it grows with the size of the MDC.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCAllocationTest {
+
+    private static final int WARMUP_CALLS = 50_000;
+    private static final int CALLS = 10_000;
+    private static final int ROUNDS = 5;
+    private static final int UPSTREAM_MDC_SIZE = 16;
+
+    @Test
+    public void testScalar() throws Exception {
+        System.out.println("testScalar");
+
+        assertBudget("scalar", false, 280, () -> new Object[] {"value"});
+        assertBudget("scalar", true, 2000, () -> new Object[] {"value"});
+    }
+
+    @Test
+    public void testPrimitiveArray() throws Exception {
+        System.out.println("testPrimitiveArray");
+
+        int[] value = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertBudget("primitiveArray", false, 500, () -> new Object[] {value});
+        assertBudget("primitiveArray", true, 2250, () -> new Object[] {value});
+    }
+
+    @Test
+    public void testNestedArray() throws Exception {
+        System.out.println("testNestedArray");
+
+        int[][] value = {{1, 2}, {3, 4}, {5, 6}};
+        assertBudget("nestedArray", false, 1100, () -> new Object[] {value});
+        assertBudget("nestedArray", true, 2850, () -> new Object[] {value});
+    }
+
+    @Test
+    public void testTrackingId() throws Exception {
+        System.out.println("testTrackingId");
+
+        assertBudget("trackingId", false, 540, () -> new Object[] {null});
+        assertBudget("trackingId", true, 2300, () -> new Object[] {null});
+        assertBudget("trackingId", false, 280, () -> new Object[] {"given-tracking-id"});
+        assertBudget("trackingId", true, 2000, () -> new Object[] {"given-tracking-id"});
+    }
+
+    @Test
+    public void testDeltaRestore() throws Exception {
+        System.out.println("testDeltaRestore");
+
+        System.setProperty(MDCInterceptor.RESTORE_MODE_PROPERTY, "delta");
+        try {
+            assertBudget("scalar", false, 80, () -> new Object[] {"value"});
+            assertBudget("scalar", true, 80, () -> new Object[] {"value"});
+        } finally {
+            System.clearProperty(MDCInterceptor.RESTORE_MODE_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        System.out.println("testScope");
+
+        assertScopeBudget(false, 48);
+        assertScopeBudget(true, 120);
+    }
+
+    /**
+     * Bytes allocated per {@link MDCScope}, not counting the MDC operations
+     * it does
+     */
+    private static void assertScopeBudget(boolean twoFields, long budget) throws Exception {
+        com.sun.management.ThreadMXBean threads = threads();
+        long[] counter = {0};
+        BoundedFormatter unlimited = new BoundedFormatter(BoundedFormatter.UNLIMITED, BoundedFormatter.UNLIMITED);
+        String[] strings = new String[512];
+        for (int i = 0 ; i < strings.length ; i++) {
+            strings[i] = ValueStrings.integer(i, unlimited);
+        }
+        MDC.clear();
+        try {
+            long overhead = allocatedPerCall(threads, () -> {
+                int i = (int) ( counter[0]++ & 511 );
+                MDC.get("recordId");
+                MDC.put("recordId", strings[i]);
+                if (twoFields) {
+                    MDC.get("agencyId");
+                    MDC.put("agencyId", "870970");
+                    if (MDC.get("agencyId") != null)
+                        MDC.remove("agencyId");
+                }
+                if (MDC.get("recordId") != null)
+                    MDC.remove("recordId");
+            });
+            long total = allocatedPerCall(threads, () -> {
+                long i = counter[0]++ & 511;
+                MDCScope scope = MDCScope.of("recordId", i);
+                if (twoFields)
+                    scope.and("agencyId", "870970");
+                scope.close();
+            });
+            long allocated = Math.max(0, total - overhead);
+            System.out.println(" scope" + ( twoFields ? " (two fields): " : " (one field): " ) + allocated + " bytes/scope (budget " + budget + ")");
+            assertThat("scope", allocated, lessThanOrEqualTo(budget));
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static void assertBudget(String name, boolean populated, long budget, ParameterSupplier parameters) throws Exception {
+        long allocated = measure(name, populated, parameters);
+        System.out.println(" " + name + ( populated ? " (populated mdc): " : " (empty mdc): " ) + allocated + " bytes/call (budget " + budget + ")");
+        assertThat(name + ( populated ? " populated" : " empty" ), allocated, lessThanOrEqualTo(budget));
+    }
+
+    /**
+     * Bytes allocated per call by the interceptor, not counting the
+     * parameter array and the method body
+     */
+    private static long measure(String name, boolean populated, ParameterSupplier parameters) throws Exception {
+        com.sun.management.ThreadMXBean threads = threads();
+
+        Method method = method(name);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, wrappers), nullValue());
+        Invoker invoker = wrappers.get(method);
+        TestInvocationContext context = new TestInvocationContext(method, () -> null);
+
+        MDC.clear();
+        if (populated) {
+            for (int i = 0 ; i < UPSTREAM_MDC_SIZE ; i++) {
+                MDC.put("upstream-" + i, "upstream-value-" + i);
+            }
+        }
+        try {
+            long overhead = allocatedPerCall(threads, () -> {
+                context.setParameters(parameters.get());
+                context.proceed();
+            });
+            long total = allocatedPerCall(threads, () -> {
+                context.setParameters(parameters.get());
+                invoker.call(context);
+            });
+            return Math.max(0, total - overhead);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean &&
+                   ( (com.sun.management.ThreadMXBean) bean ).isThreadAllocatedMemorySupported(),
+                   "Thread allocation measurement isn't supported");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static long allocatedPerCall(com.sun.management.ThreadMXBean threads, Call call) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0 ; i < WARMUP_CALLS ; i++) {
+            call.call();
+        }
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0 ; round < ROUNDS ; round++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0 ; i < CALLS ; i++) {
+                call.call();
+            }
+            long after = threads.getThreadAllocatedBytes(threadId);
+            lowest = Math.min(lowest, ( after - before ) / CALLS);
+        }
+        return lowest;
+    }
+
+    private static Method method(String name) {
+        for (Method method : Beans.class.getMethods()) {
+            if (method.getName().equals(name))
+                return method;
+        }
+        throw new IllegalArgumentException("No such method: " + name);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+
+        void call() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ParameterSupplier {
+
+        Object[] get();
+    }
+
+    public static class Beans {
+
+        public void scalar(@LogAs("a") String a) {
+        }
+
+        public void primitiveArray(@LogAs("a") int[] a) {
+        }
+
+        public void nestedArray(@LogAs("a") int[][] a) {
+        }
+
+        public void trackingId(@LogAs("trackingId") @GenerateTrackingId String trackingId) {
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCAnnotationProcessorTest {
+
+    private Path output;
+    private final List<String> errors = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        output = Files.createTempDirectory("mdc-processor");
+        errors.clear();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(output)) {
+            files.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(java.io.File::delete);
+        }
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        System.out.println("testIndex");
+
+        boolean success = compile("test.Service",
+                                  "package test;",
+                                  "import dk.dbc.commons.mdc.*;",
+                                  "public class Service {",
+                                  "    public static class Agency { public String getId() { return null; } }",
+                                  "    public void call(@LogAs(value = \"agency\", path = \"id\") Agency agency,",
+                                  "                     @GenerateTrackingId String trackingId,",
+                                  "                     @LogAs(value = \"ids\", maxElements = 5, lazy = true) int[][] ids,",
+                                  "                     String other) {",
+                                  "    }",
+                                  "}");
+        assertThat(errors.toString(), success, is(true));
+
+        List<String> lines = Files.readAllLines(output.resolve(WrapperIndex.RESOURCE));
+        assertThat(lines, contains(
+                   WrapperIndex.HEADER,
+                   "test.Service\tcall\ttest.Service$Agency,java.lang.String,[[I,java.lang.String\t0\t\tagency\tfalse\tid\t-1\t-1\tfalse\tfalse\t0",
+                   "test.Service\tcall\ttest.Service$Agency,java.lang.String,[[I,java.lang.String\t1\tDEFAULT\t\tfalse\t\t-1\t-1\tfalse\tfalse\t0",
+                   "test.Service\tcall\ttest.Service$Agency,java.lang.String,[[I,java.lang.String\t2\t\tids\tfalse\t\t5\t-1\ttrue\tfalse\t0"));
+    }
+
+    @Test
+    public void testIndexDeclarationOrder() throws Exception {
+        System.out.println("testIndexDeclarationOrder");
+
+        boolean success = compile("test.Service",
+                                  "package test;",
+                                  "import dk.dbc.commons.mdc.*;",
+                                  "public class Service {",
+                                  "    public void call(@LogAs(\"p0\") int p0, @LogAs(\"p1\") int p1, @LogAs(\"p2\") int p2, @LogAs(\"p3\") int p3,",
+                                  "                     @LogAs(\"p4\") int p4, @LogAs(\"p5\") int p5, @LogAs(\"p6\") int p6, @LogAs(\"p7\") int p7,",
+                                  "                     @LogAs(\"p8\") int p8, @LogAs(\"p9\") int p9, @LogAs(\"p10\") int p10, @LogAs(\"p11\") int p11) {",
+                                  "    }",
+                                  "}");
+        assertThat(errors.toString(), success, is(true));
+
+        List<String> lines = Files.readAllLines(output.resolve(WrapperIndex.RESOURCE));
+        assertThat(lines, hasSize(13));
+        for (int i = 0 ; i < 12 ; i++) {
+            assertThat(lines.get(i + 1).split("\t")[3], is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testPerElement() throws Exception {
+        System.out.println("testPerElement");
+
+        boolean success = compile("test.Service",
+                                  "package test;",
+                                  "import dk.dbc.commons.mdc.*;",
+                                  "public class Service {",
+                                  "    public static class Agency { public String getId() { return null; } }",
+                                  "    public void call(@LogAs(value = \"agency\", path = \"id\", perElement = true) Iterable<? extends Agency> agencies) {",
+                                  "    }",
+                                  "}");
+        assertThat(errors.toString(), success, is(true));
+
+        List<String> lines = Files.readAllLines(output.resolve(WrapperIndex.RESOURCE));
+        assertThat(lines, contains(
+                   WrapperIndex.HEADER,
+                   "test.Service\tcall\tjava.lang.Iterable\t0\t\tagency\tfalse\tid\t-1\t-1\tfalse\ttrue\t0"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        System.out.println("testErrors");
+
+        boolean success = compile("test.Service",
+                                  "package test;",
+                                  "import dk.dbc.commons.mdc.*;",
+                                  "public class Service {",
+                                  "    public void name(@LogAs(\"bad name\") String s) {}",
+                                  "    public void trackingId(@GenerateTrackingId int i) {}",
+                                  "    public void path(@LogAs(value = \"len\", path = \"length.value\") String s) {}",
+                                  "    @LogSlowCalls(field = \"\") public void slow() {}",
+                                  "    public void perElement(@LogAs(value = \"id\", perElement = true) java.util.List<String> ids) {}",
+                                  "    @LogExit(result = \"r\") public void exitVoid() {}",
+                                  "    @LogExit public java.util.concurrent.CompletionStage<String> exitAsync() { return null; }",
+                                  "}");
+        assertThat(success, is(false));
+        assertThat(errors, containsInAnyOrder(
+                   containsString("MDC field name contains invalid characters"),
+                   containsString("@GenerateTrackingId can only be used upon String types"),
+                   containsString("has no property: value"),
+                   containsString("An MDC field needs a name"),
+                   containsString("perElement can only be used upon"),
+                   containsString(ExitLine.NO_RESULT),
+                   containsString(ExitLine.ASYNC)));
+        assertThat(Files.exists(output.resolve(WrapperIndex.RESOURCE)), is(false));
+    }
+
+    private boolean compile(String className, String... source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return String.join("\n", source);
+            }
+        };
+        List<String> options = List.of("-d", output.toString(),
+                                       "-classpath", System.getProperty("java.class.path"),
+                                       "-encoding", StandardCharsets.UTF_8.name(),
+                                       "-processor", MDCAnnotationProcessor.class.getName());
+        boolean success = compiler.getTask(null, null, diagnostics, options, null, List.of(file)).call();
+        errors.addAll(diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(d -> d.getMessage(null))
+                .collect(Collectors.toList()));
+        return success;
+    }
+}
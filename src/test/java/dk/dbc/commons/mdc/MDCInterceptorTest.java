@@ -18,13 +18,28 @@
  */
 package dk.dbc.commons.mdc;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import dk.dbc.commons.mdc.MDCInterceptor.RestoreMode;
+import jakarta.interceptor.InvocationContext;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
 import org.slf4j.MDC;
 
 import static dk.dbc.commons.mdc.MDCInterceptor.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  *
@@ -70,6 +85,21 @@ public class MDCInterceptorTest {
         assertThat(missing[3], is(321));
     }
 
+    @Test
+    public void testMakeTrackingIdWithGenerator() throws Exception {
+        System.out.println("testMakeTrackingIdWithGenerator");
+
+        Consumer<Object[]> func = makeTrackingIdSetter(0, TrackingIdGenerator.COUNTER);
+
+        Object[] blank = new Object[] {" \t\n"};
+        func.accept(blank);
+        assertThat((String) blank[0], matchesPattern("[0-9a-f]{8}-[0-9a-f]+"));
+
+        Object[] existing = new Object[] {" TRACKING_ID "};
+        func.accept(existing);
+        assertThat(existing[0], is(" TRACKING_ID "));
+    }
+
     @Test
     public void testMakeMDCSetterNotNullNotArray() throws Exception {
         System.out.println("testMakeMDCSetterNotNullNotArray");
@@ -153,4 +183,397 @@ public class MDCInterceptorTest {
         func.accept(existing);
         assertThat(MDC.get("abc"), is("[null, [1, 2, 3], null]"));
     }
+
+    @Test
+    public void testDeltaRestore() throws Exception {
+        System.out.println("testDeltaRestore");
+
+        Invoker invoker = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class),
+                                                             mdcSetter(1, "b", false, String.class))),
+                                      new String[] {"a", "b"}, RestoreMode.DELTA);
+        MDC.clear();
+        MDC.put("a", "outer");
+        MDC.put("x", "upstream");
+        invoker.call(new TestInvocationContext(null, () -> {
+            assertThat(MDC.get("a"), is("inner-a"));
+            assertThat(MDC.get("b"), is("inner-b"));
+            assertThat(MDC.get("x"), is("upstream"));
+            return null;
+        }, "inner-a", "inner-b"));
+        assertThat(MDC.get("a"), is("outer"));
+        assertThat(MDC.get("b"), nullValue());
+        assertThat(MDC.get("x"), is("upstream"));
+    }
+
+    @Test
+    public void testDeltaRestoreNested() throws Exception {
+        System.out.println("testDeltaRestoreNested");
+
+        Invoker invoker = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))),
+                                      new String[] {"a"}, RestoreMode.DELTA);
+        MDC.clear();
+        invoker.call(new TestInvocationContext(null, () -> {
+            invoker.call(new TestInvocationContext(null, () -> {
+                assertThat(MDC.get("a"), is("inner"));
+                return null;
+            }, "inner"));
+            assertThat(MDC.get("a"), is("outer"));
+            return null;
+        }, "outer"));
+        assertThat(MDC.get("a"), nullValue());
+    }
+
+    @Test
+    public void testDeltaRestoreException() throws Exception {
+        System.out.println("testDeltaRestoreException");
+
+        Invoker invoker = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))),
+                                      new String[] {"a"}, RestoreMode.DELTA);
+        MDC.clear();
+        MDC.put("a", "outer");
+        assertThrows(IllegalStateException.class, () -> invoker.call(new TestInvocationContext(null, () -> {
+            throw new IllegalStateException("failed");
+        }, "inner")));
+        assertThat(MDC.get("a"), is("outer"));
+    }
+
+    @Test
+    public void testNestedSameValues() throws Exception {
+        System.out.println("testNestedSameValues");
+
+        for (RestoreMode mode : RestoreMode.values()) {
+            Invoker invoker = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))),
+                                          new String[] {"a"}, mode);
+            MDC.clear();
+            MDC.put("upstream", "x");
+            invoker.call(new TestInvocationContext(null, () -> {
+                Map<String, String> outer = MDCSnapshot.propertyMap();
+                invoker.call(new TestInvocationContext(null, () -> {
+                    assertThat(MDCSnapshot.propertyMap(), sameInstance(outer));
+                    return null;
+                }, "same"));
+                assertThat(MDCSnapshot.propertyMap(), sameInstance(outer));
+                invoker.call(new TestInvocationContext(null, () -> {
+                    assertThat(MDC.get("a"), is("other"));
+                    return null;
+                }, "other"));
+                assertThat(MDC.get("a"), is("same"));
+                return null;
+            }, "same"));
+            assertThat(mode.toString(), MDC.get("a"), nullValue());
+            assertThat(MDC.get("upstream"), is("x"));
+        }
+    }
+
+    @Test
+    public void testFullRestoreBodyChanges() throws Exception {
+        System.out.println("testFullRestoreBodyChanges");
+
+        Invoker invoker = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))),
+                                      new String[] {"a"}, RestoreMode.FULL);
+        MDC.clear();
+        MDC.put("a", "same");
+        invoker.call(new TestInvocationContext(null, () -> {
+            MDC.put("body", "value");
+            return null;
+        }, "same"));
+        assertThat(MDC.get("body"), nullValue());
+        assertThat(MDC.get("a"), is("same"));
+    }
+
+    @Test
+    public void testCombineSetters() throws Exception {
+        System.out.println("testCombineSetters");
+
+        MethodHandle setters = combineSetters(List.of(trackingIdSetter(0, TrackingIdGenerator.COUNTER),
+                                                      mdcSetter(0, "trackingId", false, String.class),
+                                                      mdcSetter(1, "ids", false, long[].class),
+                                                      mdcSetter(2, "none", true, Object.class)));
+        Object[] params = new Object[] {null, new long[] {1, 2}, null};
+        MDC.clear();
+        applySetters(setters, params);
+        assertThat(params[0], not(nullValue()));
+        assertThat(MDC.get("trackingId"), is(params[0]));
+        assertThat(MDC.get("ids"), is("[1, 2]"));
+        assertThat(MDC.get("none"), is("null"));
+
+        MDC.clear();
+        applySetters(combineSetters(List.of()), params);
+        assertThat(MDC.get("trackingId"), nullValue());
+    }
+
+    @Test
+    public void testMDCSetterBounded() throws Exception {
+        System.out.println("testMDCSetterBounded");
+
+        MethodHandle setter = mdcSetter(0, "ids", false, long[].class, new BoundedFormatter(2, 100));
+        MDC.clear();
+        applySetters(setter, new Object[] {new long[] {1, 2, 3, 4}});
+        assertThat(MDC.get("ids"), is("[1, 2, …(+2 more)]"));
+
+        setter = mdcSetter(0, "ids", false, List.class, new BoundedFormatter(2, 100));
+        applySetters(setter, new Object[] {List.of(1, 2, 3)});
+        assertThat(MDC.get("ids"), is("[1, 2, …(+1 more)]"));
+    }
+
+    @Test
+    public void testWrapMethodWithPath() throws Exception {
+        System.out.println("testWrapMethodWithPath");
+
+        Method method = Beans.class.getMethod("withPath", PropertyPathTest.Request.class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(wrapMethod(method, wrappers), nullValue());
+        MDC.clear();
+        PropertyPathTest.Request request = new PropertyPathTest.Request(new PropertyPathTest.Agency("870970"), false);
+        wrappers.get(method).call(new TestInvocationContext(method, () -> {
+            assertThat(MDC.get("agencyId"), is("870970"));
+            return null;
+        }, request));
+
+        Method bad = Beans.class.getMethod("withBadPath", PropertyPathTest.Request.class);
+        assertThat(wrapMethod(bad, wrappers), containsString("has no property: unknown"));
+    }
+
+    @Test
+    public void testSlowCall() throws Exception {
+        System.out.println("testSlowCall");
+
+        List<String> warnings = new ArrayList<>();
+        Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, (proxy, m, args) -> {
+                                                    if (m.getName().equals("warn"))
+                                                        warnings.add(MDC.get("a") + "/" + MDC.get("durationMs"));
+                                                    return m.getReturnType() == boolean.class ? true : null;
+                                                });
+        Method method = Beans.class.getMethod("slow", String.class);
+        Invoker slow = makeInvoker(combineSetters(List.of(mdcSetter(0, "a", false, String.class))), new String[] {"a"}, RestoreMode.DELTA,
+                                   makeSlowCallInvoker(InvocationContext::proceed, 1, "durationMs", logger));
+        MDC.clear();
+        slow.call(new TestInvocationContext(method, () -> null, "fast"));
+        assertThat(warnings, empty());
+
+        MDC.put("durationMs", "outer");
+        assertThrows(IllegalStateException.class, () -> slow.call(new TestInvocationContext(method, () -> {
+            Thread.sleep(5);
+            throw new IllegalStateException("failed");
+        }, "slow")));
+        assertThat(warnings, hasSize(1));
+        assertThat(warnings.get(0), matchesPattern("slow/\\d+"));
+        assertThat(MDC.get("durationMs"), is("outer"));
+        assertThat(MDC.get("a"), nullValue());
+    }
+
+    @Test
+    public void testWrapMethodSlowCalls() throws Exception {
+        System.out.println("testWrapMethodSlowCalls");
+
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(wrapMethod(Beans.class.getMethod("slow", String.class), wrappers), nullValue());
+        assertThat(wrapMethod(Beans.class.getMethod("slowBadField"), wrappers), containsString("invalid characters"));
+        assertThat(slowCallThreshold(250), is(250L));
+        assertThat(slowCallThreshold(-1), is(1000L));
+    }
+
+    @Test
+    public void testExitLine() throws Exception {
+        System.out.println("testExitLine");
+
+        boolean[] enabled = {true};
+        List<String> lines = new ArrayList<>();
+        Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, (proxy, m, args) -> {
+                                                    if (m.getReturnType() == boolean.class)
+                                                        return enabled[0];
+                                                    if (args != null && args.length == 1) // No turbo filter, the values must be in the MDC
+                                                        lines.add(m.getName() + ":" + args[0] + "/" + MDC.get("id") + "/" + MDC.get("agencyId") + "/" +
+                                                                  MDC.get("exception") + "/" + MDC.get("error"));
+                                                    return null;
+                                                });
+        Method method = Beans.class.getMethod("exit", String.class);
+        Invoker exit = makeInvoker(combineSetters(List.of(mdcSetter(0, "id", false, String.class))), new String[] {"id"}, RestoreMode.DELTA,
+                                   ExitLine.of(method, method.getAnnotation(LogExit.class), logger).wrap(InvocationContext::proceed));
+        PropertyPathTest.Request request = new PropertyPathTest.Request(new PropertyPathTest.Agency("870970"), false);
+        MDC.clear();
+        MDC.put("exception", "outer");
+
+        assertThat(exit.call(new TestInvocationContext(method, () -> request, "a")), sameInstance(request));
+        assertThat(exit.call(new TestInvocationContext(method, () -> null, "b")), nullValue());
+        assertThrows(IllegalStateException.class, () -> exit.call(new TestInvocationContext(method, () -> {
+            throw new IllegalStateException("boom");
+        }, "c")));
+        assertThat(lines, contains("info:Done with exit/a/870970/outer/null",
+                                   "info:Done with exit/b/null/outer/null",
+                                   "warn:Failed exit/c/null/java.lang.IllegalStateException/boom"));
+        assertThat(MDC.get("exception"), is("outer"));
+        assertThat(MDC.get("agencyId"), nullValue());
+        assertThat(MDC.get("error"), nullValue());
+
+        MDC.put("error", "outer error");
+        assertThrows(IllegalStateException.class, () -> exit.call(new TestInvocationContext(method, () -> {
+            throw new IllegalStateException();
+        }, "e")));
+        assertThat(lines.get(lines.size() - 1), is("warn:Failed exit/e/null/java.lang.IllegalStateException/null"));
+        assertThat(MDC.get("error"), is("outer error"));
+        MDC.remove("error");
+
+        lines.clear();
+        enabled[0] = false;
+        PropertyPathTest.Request unused = new PropertyPathTest.Request(null, false) {
+            @Override
+            public PropertyPathTest.Agency getAgency() {
+                throw new AssertionError("Return value should not be looked at");
+            }
+        };
+        assertThat(exit.call(new TestInvocationContext(method, () -> unused, "d")), sameInstance(unused));
+        assertThat(lines, empty());
+        MDC.clear();
+    }
+
+    @Test
+    public void testWrapMethodExit() throws Exception {
+        System.out.println("testWrapMethodExit");
+
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(wrapMethod(Beans.class.getMethod("exit", String.class), wrappers), nullValue());
+        assertThat(wrapMethod(Beans.class.getMethod("exitOnly"), wrappers), nullValue());
+        assertThat(wrapMethod(Beans.class.getMethod("exitVoidResult"), wrappers), containsString(ExitLine.NO_RESULT));
+        assertThat(wrapMethod(Beans.class.getMethod("exitAsync"), wrappers), containsString(ExitLine.ASYNC));
+        assertThat(wrapMethod(Beans.class.getMethod("exitBadField"), wrappers), containsString("invalid characters"));
+        assertThat(wrapMethod(Beans.class.getMethod("exitBadPath"), wrappers), containsString("has no property: unknown"));
+        assertThat(wrappers.keySet(), hasSize(2));
+    }
+
+    @Test
+    public void testPerElement() throws Exception {
+        System.out.println("testPerElement");
+
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        Method iterable = Beans.class.getMethod("perElementIterable", Iterable.class);
+        Method iterator = Beans.class.getMethod("perElementIterator", Iterator.class);
+        Method stream = Beans.class.getMethod("perElementStream", Stream.class);
+        for (Method method : List.of(iterable, iterator, stream)) {
+            assertThat(wrapMethod(method, wrappers), nullValue());
+        }
+        List<PropertyPathTest.Request> requests = List.of(new PropertyPathTest.Request(new PropertyPathTest.Agency("870970"), false),
+                                                          new PropertyPathTest.Request(null, false),
+                                                          new PropertyPathTest.Request(new PropertyPathTest.Agency("191919"), false));
+        List<String> seen = new ArrayList<>();
+        MDC.clear();
+        Object[] iterableParameters = {requests};
+        wrappers.get(iterable).call(new TestInvocationContext(iterable, () -> {
+            Iterable<?> wrapped = (Iterable<?>) iterableParameters[0];
+            for (Object request : wrapped) {
+                seen.add(MDC.get("agencyId"));
+            }
+            wrapped.forEach(r -> seen.add(MDC.get("agencyId")));
+            return null;
+        }, iterableParameters));
+        assertThat(seen, contains("870970", null, "191919", "870970", null, "191919"));
+        assertThat(MDC.get("agencyId"), nullValue());
+
+        seen.clear();
+        Object[] iteratorParameters = {requests.iterator()};
+        wrappers.get(iterator).call(new TestInvocationContext(iterator, () -> {
+            Iterator<?> wrapped = (Iterator<?>) iteratorParameters[0];
+            wrapped.next();
+            seen.add(MDC.get("agencyId"));
+            wrapped.forEachRemaining(r -> seen.add(MDC.get("agencyId")));
+            return null;
+        }, iteratorParameters));
+        assertThat(seen, contains("870970", "null", "191919"));
+
+        seen.clear();
+        Object[] streamParameters = {requests.stream()};
+        wrappers.get(stream).call(new TestInvocationContext(stream, () -> {
+            ( (Stream<?>) streamParameters[0] ).forEach(r -> seen.add(MDC.get("agencyId")));
+            return null;
+        }, streamParameters));
+        assertThat(seen, contains("870970", "null", "191919"));
+        assertThat(MDC.get("agencyId"), nullValue());
+
+        assertThat(wrapMethod(Beans.class.getMethod("perElementList", List.class), wrappers), containsString("perElement can only be used upon"));
+    }
+
+    @Test
+    public void testPerElementAfterReturn() throws Exception {
+        System.out.println("testPerElementAfterReturn");
+
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        Method iterator = Beans.class.getMethod("perElementIterator", Iterator.class);
+        assertThat(wrapMethod(iterator, wrappers), nullValue());
+        List<PropertyPathTest.Request> requests = List.of(new PropertyPathTest.Request(new PropertyPathTest.Agency("870970"), false),
+                                                          new PropertyPathTest.Request(new PropertyPathTest.Agency("191919"), false));
+        MDC.clear();
+        Object[] parameters = {requests.iterator()};
+        Object wrapped = wrappers.get(iterator).call(new TestInvocationContext(iterator, () -> {
+            Iterator<?> elements = (Iterator<?>) parameters[0];
+            elements.next();
+            assertThat(MDC.get("agencyId"), is("870970"));
+            return elements;
+        }, parameters));
+        assertThat(MDC.get("agencyId"), nullValue());
+
+        Iterator<?> elements = (Iterator<?>) wrapped;
+        assertThat(elements.next(), sameInstance(requests.get(1)));
+        assertThat(MDC.get("agencyId"), nullValue());
+        assertThat(elements.hasNext(), is(false));
+    }
+
+    public static class Beans {
+
+        public void perElementIterable(@LogAs(value = "agencyId", path = "agency.id", perElement = true) Iterable<PropertyPathTest.Request> requests) {
+        }
+
+        public void perElementIterator(@LogAs(value = "agencyId", path = "agency.id", includeNull = true, perElement = true) Iterator<PropertyPathTest.Request> requests) {
+        }
+
+        public void perElementStream(@LogAs(value = "agencyId", path = "agency.id", includeNull = true, perElement = true) Stream<? extends PropertyPathTest.Request> requests) {
+        }
+
+        public void perElementList(@LogAs(value = "agencyId", perElement = true) List<String> ids) {
+        }
+
+        @LogSlowCalls(thresholdMs = 500)
+        public void slow(@LogAs("id") String id) {
+        }
+
+        @LogSlowCalls(field = "duration ms")
+        public void slowBadField() {
+        }
+
+        @LogExit(result = "agencyId", path = "agency.id", exceptionMessage = "error")
+        public PropertyPathTest.Request exit(@LogAs("id") String id) {
+            return null;
+        }
+
+        @LogExit
+        public void exitOnly() {
+        }
+
+        @LogExit(result = "result")
+        public void exitVoidResult() {
+        }
+
+        @LogExit
+        public CompletionStage<String> exitAsync() {
+            return null;
+        }
+
+        @LogExit(exception = "exception type")
+        public String exitBadField() {
+            return null;
+        }
+
+        @LogExit(result = "agencyId", path = "agency.unknown")
+        public PropertyPathTest.Request exitBadPath() {
+            return null;
+        }
+
+        public void withPath(@LogAs(value = "agencyId", path = "agency.id") PropertyPathTest.Request request) {
+        }
+
+        public void withBadPath(@LogAs(value = "agencyId", path = "agency.unknown") PropertyPathTest.Request request) {
+        }
+
+        public void notAnnotated(PropertyPathTest.Request request, String trackingId) {
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCJsonEncoderTest {
+
+    @Test
+    public void testEncode() throws Exception {
+        System.out.println("testEncode");
+
+        JsonKeys.add(List.of("trackingId"));
+        Map<String, String> mdc = new LinkedHashMap<>();
+        mdc.put("trackingId", "abc-123");
+        mdc.put("other \"key\"", "æøå\n\uD83D\uDE00");
+        String json = encode(event("Hello \"world\"", Level.WARN, mdc, null));
+        assertThat(json, is("{\"timestamp\":\"2024-05-01T12:34:56.007+00:00\",\"version\":\"1\"," +
+                            "\"message\":\"Hello \\\"world\\\"\",\"logger\":\"dk.dbc.Test\",\"thread\":\"main\"," +
+                            "\"level\":\"WARN\",\"level_value\":30000," +
+                            "\"mdc\":{\"trackingId\":\"abc-123\",\"other \\\"key\\\"\":\"æøå\\n\uD83D\uDE00\"}}\n"));
+
+        assertThat(encode(event("no mdc", Level.INFO, Map.of(), null)),
+                   is("{\"timestamp\":\"2024-05-01T12:34:56.007+00:00\",\"version\":\"1\"," +
+                      "\"message\":\"no mdc\",\"logger\":\"dk.dbc.Test\",\"thread\":\"main\"," +
+                      "\"level\":\"INFO\",\"level_value\":20000}\n"));
+    }
+
+    @Test
+    public void testStackTrace() throws Exception {
+        System.out.println("testStackTrace");
+
+        String json = encode(event("failed", Level.ERROR, Map.of(), new IllegalStateException("boom")));
+        assertThat(json, containsString(",\"level_value\":40000,\"stack_trace\":\"java.lang.IllegalStateException: boom\\n\\tat "));
+        assertThat(json, endsWith("\"}\n"));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        System.out.println("testEscaping");
+
+        Random random = new Random(42);
+        JsonBuffer buffer = new JsonBuffer();
+        for (int i = 0 ; i < 1000 ; i++) {
+            char[] chars = new char[random.nextInt(100)];
+            for (int j = 0 ; j < chars.length ; j++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        chars[j] = (char) random.nextInt(0x80);
+                        break;
+                    case 1:
+                        chars[j] = (char) random.nextInt(0x20);
+                        break;
+                    default:
+                        chars[j] = (char) random.nextInt(0x10000);
+                        break;
+                }
+            }
+            String s = new String(chars);
+            buffer.reset();
+            buffer.string(s);
+            assertThat(new String(buffer.toByteArray(), StandardCharsets.UTF_8), is(escape(s)));
+        }
+        String large = "x".repeat(100_000) + "\"";
+        buffer.reset();
+        buffer.string(large);
+        assertThat(buffer.toByteArray().length, is(100_004));
+    }
+
+    private static String encode(LoggingEvent event) {
+        MDCJsonEncoder encoder = new MDCJsonEncoder();
+        encoder.setTimeZone("UTC");
+        encoder.start();
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    private static LoggingEvent event(String message, Level level, Map<String, String> mdc, Throwable throwable) {
+        LoggingEvent event = new LoggingEvent();
+        event.setMessage(message);
+        event.setLevel(level);
+        event.setLoggerName("dk.dbc.Test");
+        event.setThreadName("main");
+        event.setTimeStamp(1714566896007L);
+        event.setMDCPropertyMap(mdc);
+        if (throwable != null)
+            event.setThrowableProxy(new ThrowableProxy(throwable));
+        return event;
+    }
+
+    /**
+     * Reference implementation: escape as chars and let the JVM do the UTF-8
+     * encoding
+     */
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+                    break;
+            }
+        }
+        String escaped = sb.append('"').toString();
+        // Unpaired surrogates become '?' when encoded, as in the buffer
+        return new String(escaped.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
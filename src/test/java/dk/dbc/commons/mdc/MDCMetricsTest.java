@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCMetricsTest {
+
+    @Test
+    public void testBuckets() throws Exception {
+        System.out.println("testBuckets");
+
+        for (long nanos : new long[] {0, 1, 3, 4, 7, 8, 9, 1000, 1023, 1024, 1_000_000, 1L << 40, ( 1L << 41 ) - 1}) {
+            int bucket = MethodMetrics.bucket(nanos);
+            assertThat(nanos, lessThanOrEqualTo(MethodMetrics.upperBound(bucket)));
+            if (bucket > 0)
+                assertThat(nanos, greaterThan(MethodMetrics.upperBound(bucket - 1)));
+        }
+        assertThat(MethodMetrics.bucket(Long.MAX_VALUE), is(MethodMetrics.BUCKETS - 1));
+        assertThat(MethodMetrics.upperBound(MethodMetrics.BUCKETS - 1), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        System.out.println("testPercentiles");
+
+        MethodMetrics metrics = new MethodMetrics("test");
+        for (int i = 1 ; i <= 1000 ; i++) {
+            metrics.record(i * 1000L, i % 100 == 0);
+        }
+        MDCMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getCalls(), is(1000L));
+        assertThat(snapshot.getErrors(), is(10L));
+        assertThat(snapshot.getMaxNanos(), is(1_000_000L));
+        assertThat(snapshot.getMeanNanos(), is(500_500L));
+        assertThat(snapshot.getP50Nanos(), allOf(greaterThanOrEqualTo(500_000L), lessThanOrEqualTo(625_000L)));
+        assertThat(snapshot.getP99Nanos(), allOf(greaterThanOrEqualTo(990_000L), lessThanOrEqualTo(1_000_000L)));
+
+        metrics.reset();
+        snapshot = metrics.snapshot();
+        assertThat(snapshot.getCalls(), is(0L));
+        assertThat(snapshot.getP99Nanos(), is(0L));
+    }
+
+    @Test
+    public void testInvoker() throws Exception {
+        System.out.println("testInvoker");
+
+        Method method = MDCMetricsTest.class.getMethod("testInvoker");
+        MethodMetrics metrics = new MethodMetrics(method.toGenericString());
+        Invoker invoker = MDCInterceptor.makeMetricsInvoker(ic -> ic.proceed(), metrics);
+
+        assertThat(invoker.call(new TestInvocationContext(method, () -> "ok")), is("ok"));
+        assertThrows(IOException.class, () -> invoker.call(new TestInvocationContext(method, () -> {
+                                             throw new IOException();
+                                         })));
+        assertThrows(StackOverflowError.class, () -> invoker.call(new TestInvocationContext(method, () -> {
+                                                   throw new StackOverflowError();
+                                               })));
+
+        MDCMetrics.Snapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getCalls(), is(3L));
+        assertThat(snapshot.getErrors(), is(2L));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        System.out.println("testJmx");
+
+        Method method = MDCMetricsTest.class.getMethod("testJmx");
+        MethodMetrics metrics = new MethodMetrics(method.toGenericString());
+        MDCMetrics.Pending statistics = new MDCMetrics.Pending();
+        statistics.add(method, metrics, List.of());
+        assertThat(MDCMetrics.snapshot().stream()
+                .anyMatch(s -> s.getMethod().equals(method.toGenericString())), is(false));
+        statistics.publish();
+        metrics.record(2000, false);
+        try {
+            CompositeData[] methods = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(MDCMetrics.OBJECT_NAME), "Methods");
+            CompositeData data = List.of(methods).stream()
+                    .filter(d -> d.get("method").equals(method.toGenericString()))
+                    .findAny().orElseThrow();
+            assertThat(data.get("calls"), is(1L));
+            assertThat(data.get("p50Nanos"), is(2000L));
+
+            ManagementFactory.getPlatformMBeanServer()
+                    .invoke(new ObjectName(MDCMetrics.OBJECT_NAME), "reset", null, null);
+            assertThat(MDCMetrics.snapshot().stream()
+                    .filter(s -> s.getMethod().equals(method.toGenericString()))
+                    .findAny().orElseThrow().getCalls(), is(0L));
+        } finally {
+            MDCMetrics.unregister(List.of(method));
+        }
+        assertThat(MDCMetrics.snapshot().stream()
+                .anyMatch(s -> s.getMethod().equals(method.toGenericString())), is(false));
+    }
+
+    @Test
+    public void testJmxRedeploy() throws Exception {
+        System.out.println("testJmxRedeploy");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MDCMetrics.OBJECT_NAME);
+        Method method = Beans.class.getMethod("call", String.class);
+        System.setProperty(MDCMetrics.PROPERTY, "true");
+        try {
+            for (int i = 0 ; i < 2 ; i++) {
+                MDCExtension extension = new MDCExtension();
+                extension.wrapMethod(method);
+                extension.afterBeanDiscovery(MDCPolicyTest.afterBeanDiscovery());
+                CompositeData[] methods = (CompositeData[]) server.getAttribute(name, "Methods");
+                assertThat(List.of(methods).stream()
+                        .anyMatch(d -> d.get("method").equals(method.toGenericString())), is(true));
+                CompositeData[] caches = (CompositeData[]) server.getAttribute(name, "ValueCaches");
+                assertThat(caches.length, is(1));
+                extension.beforeShutdown(null);
+                assertThat(server.isRegistered(name), is(false));
+            }
+        } finally {
+            System.clearProperty(MDCMetrics.PROPERTY);
+        }
+    }
+
+    public static class Beans {
+
+        public void call(@LogAs(value = "agencyId", cacheSize = 16) String agencyId) {
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jakarta.enterprise.inject.spi.AfterBeanDiscovery;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCPolicyTest {
+
+    @Test
+    public void testModes() throws Exception {
+        System.out.println("testModes");
+
+        Method method = Beans.class.getMethod("call", String.class, int.class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, wrappers), nullValue());
+        Invoker invoker = wrappers.get(method);
+        AtomicBoolean infoEnabled = new AtomicBoolean();
+        Logger logger = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, (proxy, m, args) -> {
+                                                    if (m.getName().equals("isInfoEnabled"))
+                                                        return infoEnabled.get();
+                                                    return m.getReturnType() == boolean.class ? false : null;
+                                                });
+        List<String> seen = new ArrayList<>();
+        try {
+            MDC.clear();
+            for (MDCPolicy.Mode mode : MDCPolicy.Mode.values()) {
+                MDCPolicy.set(mode, "test", logger, Level.INFO);
+                for (boolean enabled : new boolean[] {false, true}) {
+                    infoEnabled.set(enabled);
+                    invoker.call(new TestInvocationContext(method, () -> {
+                        seen.add(mode + "/" + enabled + ":" + ( MDC.get("trackingId") != null ) + "/" + MDC.get("agencyId"));
+                        return null;
+                    }, null, 870970));
+                    assertThat(MDC.get("trackingId"), nullValue());
+                    assertThat(MDC.get("agencyId"), nullValue());
+                }
+            }
+        } finally {
+            MDCPolicy.reload();
+        }
+        assertThat(seen, contains("FULL/false:true/870970",
+                                  "FULL/true:true/870970",
+                                  "LOGGER_ENABLED/false:true/null",
+                                  "LOGGER_ENABLED/true:true/870970",
+                                  "OFF/false:true/null",
+                                  "OFF/true:true/null"));
+    }
+
+    @Test
+    public void testWithoutTrackingId() throws Exception {
+        System.out.println("testWithoutTrackingId");
+
+        Method method = Beans.class.getMethod("plain", String.class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, wrappers), nullValue());
+        try {
+            MDC.clear();
+            MDCPolicy.set(MDCPolicy.Mode.OFF);
+            wrappers.get(method).call(new TestInvocationContext(method, () -> {
+                assertThat(MDC.get("a"), nullValue());
+                return null;
+            }, "value"));
+            MDCPolicy.set(MDCPolicy.Mode.FULL);
+            wrappers.get(method).call(new TestInvocationContext(method, () -> {
+                assertThat(MDC.get("a"), is("value"));
+                return null;
+            }, "value"));
+        } finally {
+            MDCPolicy.reload();
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        System.out.println("testReload");
+
+        try {
+            System.setProperty(MDCPolicy.PROPERTY, "logger_enabled");
+            System.setProperty(MDCPolicy.LOGGER_PROPERTY, "dk.dbc");
+            System.setProperty(MDCPolicy.LEVEL_PROPERTY, "debug");
+            MDCPolicy.reload();
+            assertThat(MDCPolicy.getMode(), is(MDCPolicy.Mode.LOGGER_ENABLED));
+            assertThat(MDCPolicy.getLogger(), is("dk.dbc"));
+            assertThat(MDCPolicy.getLevel(), is(Level.DEBUG));
+
+            System.setProperty(MDCPolicy.PROPERTY, "sometimes");
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, MDCPolicy::reload);
+            assertThat(ex.getMessage(), is("Unknown mode: sometimes"));
+            assertThat(MDCPolicy.getMode(), is(MDCPolicy.Mode.LOGGER_ENABLED));
+        } finally {
+            System.clearProperty(MDCPolicy.PROPERTY);
+            System.clearProperty(MDCPolicy.LOGGER_PROPERTY);
+            System.clearProperty(MDCPolicy.LEVEL_PROPERTY);
+            MDCPolicy.reload();
+        }
+        assertThat(MDCPolicy.getMode(), is(MDCPolicy.Mode.FULL));
+    }
+
+    @Test
+    public void testJmxRedeploy() throws Exception {
+        System.out.println("testJmxRedeploy");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MDCPolicy.OBJECT_NAME);
+        // As left by an undeployed copy of the library
+        server.registerMBean(Proxy.newProxyInstance(MDCPolicyMXBean.class.getClassLoader(), new Class<?>[] {MDCPolicyMXBean.class}, (proxy, m, args) -> {
+                                                 if (m.getName().equals("getMode"))
+                                                     return "STALE";
+                                                 return null;
+                                             }), name);
+        try {
+            for (int i = 0 ; i < 2 ; i++) {
+                MDCExtension extension = new MDCExtension();
+                extension.wrapMethod(Beans.class.getMethod("plain", String.class));
+                extension.afterBeanDiscovery(afterBeanDiscovery());
+                assertThat(server.getAttribute(name, "Mode"), is("FULL"));
+                server.setAttribute(name, new Attribute("Mode", "OFF"));
+                assertThat(MDCPolicy.getMode(), is(MDCPolicy.Mode.OFF));
+                server.setAttribute(name, new Attribute("Mode", "FULL"));
+                extension.beforeShutdown(null);
+                assertThat(server.isRegistered(name), is(false));
+            }
+        } finally {
+            MDCPolicy.reload();
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * The event of a deployment without definition errors
+     *
+     * @return event, that fails on definition errors
+     */
+    static AfterBeanDiscovery afterBeanDiscovery() {
+        return (AfterBeanDiscovery) Proxy.newProxyInstance(AfterBeanDiscovery.class.getClassLoader(), new Class<?>[] {AfterBeanDiscovery.class}, (proxy, m, args) -> {
+                                                         throw new AssertionError(m.getName() + ": " + ( args == null ? "" : args[0] ));
+                                                     });
+    }
+
+    public static class Beans {
+
+        public void call(@GenerateTrackingId @LogAs("trackingId") String trackingId, @LogAs("agencyId") int agencyId) {
+        }
+
+        public void plain(@LogAs("a") String a) {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCRateLimitFilterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testRateLimit() throws Exception {
+        System.out.println("testRateLimit");
+
+        RateLimit limit = new RateLimit("trackingId", 10, 3, 1.0, 16);
+        long now = System.nanoTime();
+        assertThat(limit.allow("a", now), is(true));
+        assertThat(limit.allow("a", now), is(true));
+        assertThat(limit.allow("a", now), is(true));
+        assertThat(limit.allow("a", now), is(false));
+        assertThat(limit.allow("b", now), is(true));
+        assertThat(limit.allow("a", now + 50 * MS), is(false));
+        assertThat(limit.allow("a", now + 100 * MS), is(true));
+        assertThat(limit.allow("a", now + 100 * MS), is(false));
+        // Idle for a long time gives a full burst, not more
+        assertThat(limit.allow("a", now + 10_000 * MS), is(true));
+        assertThat(limit.allow("a", now + 10_000 * MS), is(true));
+        assertThat(limit.allow("a", now + 10_000 * MS), is(true));
+        assertThat(limit.allow("a", now + 10_000 * MS), is(false));
+
+        MDCMetrics.RateLimitSnapshot snapshot = limit.snapshot();
+        assertThat(snapshot.getPassed(), is(8L));
+        assertThat(snapshot.getRateLimited(), is(4L));
+        assertThat(snapshot.getSampledOut(), is(0L));
+        assertThat(snapshot.getValues(), is(2));
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        System.out.println("testSampling");
+
+        RateLimit limit = new RateLimit("trackingId", 0, 1, 0.25, 16);
+        long now = System.nanoTime();
+        int passed = 0;
+        for (int i = 0 ; i < 10_000 ; i++) {
+            String value = "tracking-" + i;
+            boolean allowed = limit.allow(value, now);
+            // Same decision for every event of a value
+            assertThat(limit.allow(value, now), is(allowed));
+            if (allowed)
+                passed++;
+        }
+        assertThat(passed, allOf(greaterThan(2_000), lessThan(3_000)));
+        assertThat(limit.snapshot().getSuppressed(), is(2L * ( 10_000 - passed )));
+    }
+
+    @Test
+    public void testBoundedTable() throws Exception {
+        System.out.println("testBoundedTable");
+
+        RateLimit limit = new RateLimit("trackingId", 1, 1, 1.0, 16);
+        long now = System.nanoTime();
+        for (int i = 0 ; i < 10_000 ; i++) {
+            limit.allow("tracking-" + i, now);
+        }
+        MDCMetrics.RateLimitSnapshot snapshot = limit.snapshot();
+        assertThat(snapshot.getValues(), is(16));
+        assertThat(snapshot.getEvictions(), is(10_000L - 16));
+        assertThat(snapshot.getPassed(), is(10_000L));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        System.out.println("testConcurrent");
+
+        RateLimit limit = new RateLimit("trackingId", 1, 100, 1.0, 16);
+        long now = System.nanoTime();
+        AtomicInteger passed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0 ; t < 4 ; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0 ; i < 1_000 ; i++) {
+                    if (limit.allow("hot", now))
+                        passed.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(passed.get(), is(100));
+        assertThat(limit.snapshot().getRateLimited(), is(3_900L));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        System.out.println("testFilter");
+
+        MDCRateLimitFilter filter = new MDCRateLimitFilter();
+        MDCRateLimitFilter.Limit limit = new MDCRateLimitFilter.Limit();
+        limit.setField("trackingId");
+        limit.setEventsPerSecond(1);
+        limit.setBurst(2);
+        filter.addLimit(limit);
+        filter.start();
+        assertThat(filter.isStarted(), is(true));
+        try {
+            long now = System.nanoTime();
+            MDC.clear();
+            assertThat(filter.limit(now), is(FilterReply.NEUTRAL));
+            MDC.put("trackingId", "hot");
+            assertThat(filter.limit(now), is(FilterReply.NEUTRAL));
+            assertThat(filter.limit(now), is(FilterReply.NEUTRAL));
+            assertThat(filter.limit(now), is(FilterReply.DENY));
+            MDC.put("trackingId", "cold");
+            assertThat(filter.limit(now), is(FilterReply.NEUTRAL));
+            assertThat(MDCMetrics.rateLimitSnapshot(), hasItem(hasToString("trackingId{passed=3, sampledOut=0, rateLimited=1, values=2, evictions=0}")));
+        } finally {
+            MDC.clear();
+            filter.stop();
+        }
+        assertThat(MDCMetrics.rateLimitSnapshot(), empty());
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        System.out.println("testInvalid");
+
+        MDCRateLimitFilter filter = new MDCRateLimitFilter();
+        MDCRateLimitFilter.Limit limit = new MDCRateLimitFilter.Limit();
+        limit.setField("trackingId");
+        limit.setSampleRate(2);
+        filter.addLimit(limit);
+        filter.start();
+        assertThat(filter.isStarted(), is(false));
+
+        filter = new MDCRateLimitFilter();
+        filter.addLimit(new MDCRateLimitFilter.Limit());
+        filter.start();
+        assertThat(filter.isStarted(), is(false));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCScopeTest {
+
+    @Test
+    public void testNested() throws Exception {
+        System.out.println("testNested");
+
+        MDC.clear();
+        MDC.put("trackingId", "t");
+        MDC.put("agencyId", "870970");
+        try (MDCScope outer = MDCScope.of("recordId", "a").and("agencyId", 191919)) {
+            assertThat(MDC.get("recordId"), is("a"));
+            assertThat(MDC.get("agencyId"), is("191919"));
+            try (MDCScope inner = MDCScope.of("recordId", new int[] {1, 2}).and("agencyId", null)) {
+                assertThat(MDC.get("recordId"), is("[1, 2]"));
+                assertThat(MDC.get("agencyId"), nullValue());
+            }
+            assertThat(MDC.get("recordId"), is("a"));
+            assertThat(MDC.get("agencyId"), is("191919"));
+        }
+        assertThat(MDC.get("recordId"), nullValue());
+        assertThat(MDC.get("agencyId"), is("870970"));
+        assertThat(MDC.get("trackingId"), is("t"));
+    }
+
+    @Test
+    public void testStaleClose() throws Exception {
+        System.out.println("testStaleClose");
+
+        MDC.clear();
+        MDCScope first = MDCScope.of("recordId", 1L);
+        first.close();
+        first.close(); // Closing twice does nothing
+        try (MDCScope second = MDCScope.of("recordId", 2L).and("a", 1).and("b", 2).and("c", 3).and("d", 4)) {
+            first.close(); // Doesn't close the new scope
+            assertThat(MDC.get("recordId"), is("2"));
+            assertThat(MDC.get("d"), is("4"));
+        }
+        assertThat(MDC.get("recordId"), nullValue());
+        assertThat(MDC.get("d"), nullValue());
+        assertThrows(IllegalStateException.class, () -> first.and("recordId", "closed"));
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        System.out.println("testOutOfOrder");
+
+        MDC.clear();
+        MDCScope outer = MDCScope.of("outer", "o");
+        MDCScope inner = MDCScope.of("inner", "i");
+        outer.close();
+        assertThat(MDC.get("outer"), nullValue());
+        assertThat(MDC.get("inner"), is("i"));
+        inner.close();
+        assertThat(MDC.get("inner"), nullValue());
+    }
+
+    @Test
+    public void testFailingValue() throws Exception {
+        System.out.println("testFailingValue");
+
+        Object bad = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("bad value");
+            }
+        };
+        MDC.clear();
+        MDCScope scope = MDCScope.of("recordId", "r");
+        scope.close();
+        assertThrows(IllegalStateException.class, () -> MDCScope.of("recordId", "r").and("bad", bad));
+        assertThat(MDC.get("recordId"), nullValue());
+        try (MDCScope next = MDCScope.of("recordId", "r")) {
+            assertThat(MDC.get("recordId"), is("r"));
+        }
+        assertThat(MDC.get("recordId"), nullValue());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class MDCSnapshotTest {
+
+    @Test
+    public void testCapture() throws Exception {
+        System.out.println("testCapture");
+
+        MDC.clear();
+        assertThat(MDCSnapshot.capture(), sameInstance(MDCSnapshot.EMPTY));
+        MDC.put("trackingId", "abc");
+        MDCSnapshot first = MDCSnapshot.capture();
+        assertThat(first.asMap(), is(Map.of("trackingId", "abc")));
+        assertThat(MDCSnapshot.capture(), sameInstance(first));
+        MDC.put("recordId", "123");
+        MDCSnapshot second = MDCSnapshot.capture();
+        assertThat(second.asMap(), is(Map.of("trackingId", "abc", "recordId", "123")));
+        assertThat(first.asMap(), is(Map.of("trackingId", "abc")));
+        MDC.clear();
+    }
+
+    @Test
+    public void testRunOnSameThread() throws Exception {
+        System.out.println("testRunOnSameThread");
+
+        MDC.clear();
+        MDC.put("trackingId", "abc");
+        MDCSnapshot snapshot = MDCSnapshot.capture();
+        snapshot.run(() -> {
+            assertThat(MDC.get("trackingId"), is("abc"));
+            MDC.put("inner", "x");
+        });
+        assertThat(MDC.get("inner"), nullValue());
+        assertThat(MDC.get("trackingId"), is("abc"));
+
+        MDC.put("trackingId", "other");
+        snapshot.run(() -> assertThat(MDC.get("trackingId"), is("abc")));
+        assertThat(MDC.get("trackingId"), is("other"));
+        MDC.clear();
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        System.out.println("testExecutor");
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            ExecutorService executor = MDCExecutors.wrap(pool);
+            pool.submit(() -> MDC.put("worker", "own")).get();
+
+            MDC.clear();
+            MDC.put("trackingId", "abc");
+            assertThat(executor.submit(() -> MDC.get("trackingId")).get(), is("abc"));
+            assertThat(executor.submit(() -> MDC.get("worker")).get(), nullValue());
+            assertThat(CompletableFuture.supplyAsync(() -> MDC.get("trackingId"), executor).get(), is("abc"));
+            assertThat(executor.invokeAll(List.of(() -> MDC.get("trackingId"))).get(0).get(), is("abc"));
+            // The MDC of the worker is restored
+            assertThat(pool.submit(() -> MDC.get("worker")).get(), is("own"));
+            assertThat(pool.submit(() -> MDC.get("trackingId")).get(), nullValue());
+        } finally {
+            MDC.clear();
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testLazyExecutor() throws Exception {
+        System.out.println("testLazyExecutor");
+
+        Method method = Beans.class.getMethod("lazy", int[].class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, wrappers), nullValue());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            ExecutorService executor = MDCExecutors.wrap(pool);
+            MDC.clear();
+            Object seen = wrappers.get(method).call(new TestInvocationContext(method, () -> {
+                assertThat(MDC.get("ids"), is(LazyMDC.PLACEHOLDER));
+                return executor.submit(() -> MDC.get("ids")).get();
+            }, new int[] {1, 2}));
+            assertThat(seen, is("[1, 2]"));
+        } finally {
+            MDC.clear();
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class Beans {
+
+        public void lazy(@LogAs(value = "ids", lazy = true) int[] ids) {
+        }
+    }
+}
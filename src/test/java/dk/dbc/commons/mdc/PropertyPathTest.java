@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class PropertyPathTest {
+
+    @Test
+    public void testPaths() throws Throwable {
+        System.out.println("testPaths");
+
+        Request request = new Request(new Agency("870970"), true);
+        assertThat(get(Request.class, "agency.id", request), is("870970"));
+        assertThat(get(Request.class, "agency.code", request), is(870970));
+        assertThat(get(Request.class, "agency.name", request), is("Agency 870970"));
+        assertThat(get(Request.class, "debug", request), is(true));
+        assertThat(get(Request.class, "agency.id.length", request), is(6));
+        assertThat(get(Request.class, "agency", request), sameInstance(request.getAgency()));
+        assertThat(get(Request.class, "", request), sameInstance(request));
+
+        assertThat(PropertyPath.of(Request.class, "agency.id").type(), is(String.class));
+        assertThat(PropertyPath.of(Request.class, "agency.code").type(), is(int.class));
+    }
+
+    @Test
+    public void testNull() throws Throwable {
+        System.out.println("testNull");
+
+        assertThat(get(Request.class, "agency.id", new Request(null, false)), nullValue());
+        assertThat(get(Request.class, "agency.id", new Request(new Agency(null), false)), nullValue());
+        assertThat(get(Request.class, "agency.id.length", new Request(new Agency(null), false)), nullValue());
+        assertThat(get(Request.class, "agency.id", null), nullValue());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        System.out.println("testErrors");
+
+        assertThrows(IllegalArgumentException.class, () -> PropertyPath.of(Request.class, "agency.unknown"));
+        assertThrows(IllegalArgumentException.class, () -> PropertyPath.of(Request.class, "agency.code.value"));
+        assertThrows(IllegalArgumentException.class, () -> PropertyPath.of(Request.class, "agency..id"));
+        assertThrows(IllegalArgumentException.class, () -> PropertyPath.of(int[].class, "length"));
+    }
+
+    private static Object get(Class<?> type, String path, Object value) throws Throwable {
+        MethodHandle getter = PropertyPath.of(type, path).from(MethodHandles.identity(Object.class));
+        return getter.invoke(value);
+    }
+
+    public static class Request {
+
+        private final Agency agency;
+        private final boolean debug;
+
+        public Request(Agency agency, boolean debug) {
+            this.agency = agency;
+            this.debug = debug;
+        }
+
+        public Agency getAgency() {
+            return agency;
+        }
+
+        public boolean isDebug() {
+            return debug;
+        }
+    }
+
+    public static class Agency {
+
+        public final String id;
+
+        public Agency(String id) {
+            this.id = id;
+        }
+
+        public int code() {
+            return Integer.parseInt(id);
+        }
+
+        public String getName() {
+            return "Agency " + id;
+        }
+    }
+}
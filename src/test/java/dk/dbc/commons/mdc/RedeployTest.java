@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Simulates a library shared between applications, that are redeployed
+ * <p>
+ * Every deployment goes through the {@link MDCExtension}, with metrics, a
+ * value cache and a lazy value, so the wrappers, the statistics, the MXBeans
+ * and the logback filter have to let go of the classloader.
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class RedeployTest {
+
+    private static final int DEPLOYMENTS = 1000;
+
+    @Test
+    public void testRedeploy() throws Exception {
+        System.out.println("testRedeploy");
+
+        List<WeakReference<ClassLoader>> undeployed = new ArrayList<>();
+        long before;
+        System.setProperty(MDCMetrics.PROPERTY, "true");
+        try {
+            deploy(); // Warm up shared method handle infrastructure
+            before = metaspace();
+            for (int i = 0 ; i < DEPLOYMENTS ; i++) {
+                undeployed.add(deploy());
+            }
+        } finally {
+            System.clearProperty(MDCMetrics.PROPERTY);
+        }
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(MDCPolicy.OBJECT_NAME)), is(false));
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(MDCMetrics.OBJECT_NAME)), is(false));
+        for (int i = 0 ; i < 10 && undeployed.stream().anyMatch(r -> r.get() != null) ; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        long after = metaspace();
+        System.out.println("metaspace: " + before + " -> " + after);
+
+        assertThat(undeployed.stream().filter(r -> r.get() != null).count(), is(0L));
+        // A leaked deployment holds its class metadata (~1.7KB), the rest is allocator slack
+        assertThat(after - before, lessThan(DEPLOYMENTS * 1024L));
+    }
+
+    /**
+     * Load the bean in a new classloader, and deploy, call and undeploy it
+     * through the {@link MDCExtension}
+     *
+     * @return reference to the classloader
+     */
+    private static WeakReference<ClassLoader> deploy() throws Exception {
+        ClassLoader classLoader = new DeploymentClassLoader();
+        Class<?> bean = classLoader.loadClass(Bean.class.getName());
+        assertThat(bean, not(sameInstance(Bean.class)));
+        Method method = bean.getMethod("call", String.class, int[].class);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            MDCExtension extension = new MDCExtension();
+            extension.wrapMethod(method);
+            extension.afterBeanDiscovery(MDCPolicyTest.afterBeanDiscovery());
+            new MDCInterceptor().methodInvocation(new TestInvocationContext(method, () -> {
+                assertThat(MDC.get("redeploy"), is("value"));
+                LazyMDC.materialize();
+                assertThat(MDC.get("ids"), is("[1, 2]"));
+                return null;
+            }, "value", new int[] {1, 2}));
+            extension.beforeShutdown(null);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+        return new WeakReference<>(classLoader);
+    }
+
+    private static long metaspace() {
+        System.gc();
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getName().equals("Metaspace"))
+                .mapToLong(p -> p.getUsage().getUsed())
+                .sum();
+    }
+
+    public static class Bean {
+
+        public void call(@LogAs(value = "redeploy", cacheSize = 16) String value,
+                         @LogAs(value = "ids", lazy = true) int[] ids) {
+        }
+    }
+
+    /**
+     * Defines its own copy of {@link Bean}, everything else comes from the
+     * parent
+     */
+    private static class DeploymentClassLoader extends ClassLoader {
+
+        DeploymentClassLoader() {
+            super(RedeployTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(Bean.class.getName()))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        byte[] bytes = is.readAllBytes();
+                        clazz = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return clazz;
+            }
+        }
+    }
+}
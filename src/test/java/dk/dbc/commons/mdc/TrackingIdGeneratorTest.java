@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class TrackingIdGeneratorTest {
+
+    private static final String UUID_PATTERN = "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}";
+
+    @Test
+    public void testUuids() throws Exception {
+        System.out.println("testUuids");
+
+        for (TrackingIdGenerator generator : new TrackingIdGenerator[] {TrackingIdGenerator.RANDOM_UUID,
+                                                                        TrackingIdGenerator.FAST_UUID,
+                                                                        TrackingIdGenerator.TIME_ORDERED_UUID}) {
+            String id = generator.generate();
+            assertThat(generator.name(), id, matchesPattern(UUID_PATTERN));
+            assertThat(generator.name(), UUID.fromString(id).variant(), is(2));
+        }
+        assertThat(UUID.fromString(TrackingIdGenerator.RANDOM_UUID.generate()).version(), is(4));
+        assertThat(UUID.fromString(TrackingIdGenerator.FAST_UUID.generate()).version(), is(4));
+        assertThat(UUID.fromString(TrackingIdGenerator.TIME_ORDERED_UUID.generate()).version(), is(7));
+    }
+
+    @Test
+    public void testTimeOrdered() throws Exception {
+        System.out.println("testTimeOrdered");
+
+        long before = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(TrackingIdGenerator.TIME_ORDERED_UUID.generate());
+        long after = System.currentTimeMillis();
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        assertThat(timestamp, greaterThanOrEqualTo(before));
+        assertThat(timestamp, lessThanOrEqualTo(after));
+    }
+
+    @Test
+    public void testCounter() throws Exception {
+        System.out.println("testCounter");
+
+        Set<String> ids = new HashSet<>();
+        for (int i = 0 ; i < 5000 ; i++) {
+            String id = TrackingIdGenerator.COUNTER.generate();
+            assertThat(id, matchesPattern("[0-9a-f]{8}-[0-9a-f]+"));
+            ids.add(id);
+        }
+        assertThat(ids.size(), is(5000));
+    }
+
+    @Test
+    public void testConfigured() throws Exception {
+        System.out.println("testConfigured");
+
+        try {
+            System.clearProperty(TrackingIdGenerator.PROPERTY);
+            assertThat(TrackingIdGenerator.DEFAULT.resolve(), is(TrackingIdGenerator.RANDOM_UUID));
+            System.setProperty(TrackingIdGenerator.PROPERTY, "time_ordered_uuid");
+            assertThat(TrackingIdGenerator.DEFAULT.resolve(), is(TrackingIdGenerator.TIME_ORDERED_UUID));
+            assertThat(TrackingIdGenerator.COUNTER.resolve(), is(TrackingIdGenerator.COUNTER));
+        } finally {
+            System.clearProperty(TrackingIdGenerator.PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class ValueCacheTest {
+
+    private static final BoundedFormatter UNLIMITED = new BoundedFormatter(BoundedFormatter.UNLIMITED, BoundedFormatter.UNLIMITED);
+
+    public enum Format {
+        MARCXCHANGE,
+        DANMARC2 {
+            @Override
+            public String toString() {
+                return "danMARC2";
+            }
+        }
+    }
+
+    @Test
+    public void testEnum() throws Throwable {
+        System.out.println("testEnum");
+
+        MethodHandle converter = MDCInterceptor.converter(Format.class, UNLIMITED);
+        assertThat((String) converter.invokeExact((Object) Format.MARCXCHANGE), is("MARCXCHANGE"));
+        assertThat((String) converter.invokeExact((Object) Format.DANMARC2), is("danMARC2"));
+
+        converter = MDCInterceptor.converter(Format.class, new BoundedFormatter(BoundedFormatter.UNLIMITED, 4));
+        assertThat((String) converter.invokeExact((Object) Format.MARCXCHANGE), is("MARC…(+7 more)"));
+    }
+
+    @Test
+    public void testSmallIntegers() throws Throwable {
+        System.out.println("testSmallIntegers");
+
+        MethodHandle converter = MDCInterceptor.converter(int.class, UNLIMITED);
+        String first = (String) converter.invokeExact((Object) 870);
+        assertThat(first, is("870"));
+        assertThat((String) converter.invokeExact((Object) 870), sameInstance(first));
+        assertThat((String) converter.invokeExact((Object) (-128)), is("-128"));
+        assertThat((String) converter.invokeExact((Object) 870970), is("870970"));
+        assertThat((String) MDCInterceptor.converter(Long.class, UNLIMITED).invokeExact((Object) Long.MIN_VALUE), is(String.valueOf(Long.MIN_VALUE)));
+        assertThat((String) MDCInterceptor.converter(byte.class, UNLIMITED).invokeExact((Object) (byte) 7), is("7"));
+        // Too short for the table, goes through the formatter
+        assertThat((String) MDCInterceptor.converter(int.class, new BoundedFormatter(BoundedFormatter.UNLIMITED, 2)).invokeExact((Object) 870), is("87…(+1 more)"));
+        MethodHandle bounded = MDCInterceptor.converter(long.class, new BoundedFormatter(BoundedFormatter.UNLIMITED, 5));
+        assertThat((String) bounded.invokeExact((Object) 870L), is("870"));
+        assertThat((String) bounded.invokeExact((Object) 123456789L), is("12345…(+4 more)"));
+    }
+
+    @Test
+    public void testCache() throws Throwable {
+        System.out.println("testCache");
+
+        ValueCache cache = new ValueCache("method", "agencyId", 3, MDCInterceptor.converter(String.class, UNLIMITED));
+        String first = cache.get(new StringBuilder("870970").toString());
+        assertThat(first, is("870970"));
+        assertThat(cache.get(new StringBuilder("870970").toString()), sameInstance(first));
+        for (int i = 0 ; i < 100 ; i++) {
+            assertThat(cache.get(String.valueOf(i)), is(String.valueOf(i)));
+        }
+        MDCMetrics.CacheSnapshot snapshot = cache.snapshot();
+        assertThat(snapshot.getCapacity(), is(4));
+        assertThat(snapshot.getSize(), lessThanOrEqualTo(4));
+        assertThat(snapshot.getHits(), is(1L));
+        assertThat(snapshot.getMisses(), is(101L));
+    }
+
+    @Test
+    public void testWrapMethod() throws Throwable {
+        System.out.println("testWrapMethod");
+
+        Method method = Beans.class.getMethod("cached", String.class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        MDCMetrics.Pending statistics = new MDCMetrics.Pending();
+        assertThat(MDCInterceptor.wrapMethod(method, WrapperIndex.EMPTY, wrappers, statistics), nullValue());
+        assertThat(MDCMetrics.cacheSnapshot().stream()
+                .anyMatch(c -> c.getMethod().equals(method.toGenericString())), is(false));
+        MDCInterceptor.register(wrappers, statistics);
+        try {
+            MDC.clear();
+            for (String agencyId : List.of("870970", "191919", "870970", "870970")) {
+                wrappers.get(method).call(new TestInvocationContext(method, () -> {
+                    assertThat(MDC.get("agencyId"), is(agencyId));
+                    return null;
+                }, agencyId));
+            }
+            List<MDCMetrics.CacheSnapshot> caches = MDCMetrics.cacheSnapshot().stream()
+                    .filter(c -> c.getMethod().equals(method.toGenericString()))
+                    .collect(Collectors.toList());
+            assertThat(caches, hasSize(1));
+            assertThat(caches.get(0).getField(), is("agencyId"));
+            assertThat(caches.get(0).getHits(), is(2L));
+            assertThat(caches.get(0).getMisses(), is(2L));
+            assertThat(caches.get(0).getHitRatio(), is(0.5));
+        } finally {
+            MDCInterceptor.unregister(List.of(method));
+        }
+        assertThat(MDCMetrics.cacheSnapshot().stream()
+                .anyMatch(c -> c.getMethod().equals(method.toGenericString())), is(false));
+    }
+
+    @Test
+    public void testFailedWrapMethod() throws Throwable {
+        System.out.println("testFailedWrapMethod");
+
+        Method method = Beans.class.getMethod("cachedThenInvalid", String.class, String.class);
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        MDCMetrics.Pending statistics = new MDCMetrics.Pending();
+        assertThat(MDCInterceptor.wrapMethod(method, WrapperIndex.EMPTY, wrappers, statistics), containsString("invalid characters"));
+        statistics.publish();
+        assertThat(wrappers.keySet(), empty());
+        assertThat(MDCMetrics.cacheSnapshot().stream()
+                .anyMatch(c -> c.getMethod().equals(method.toGenericString())), is(false));
+    }
+
+    public static class Beans {
+
+        public void cached(@LogAs(value = "agencyId", cacheSize = 16) String agencyId) {
+        }
+
+        public void cachedThenInvalid(@LogAs(value = "agencyId", cacheSize = 16) String agencyId, @LogAs("bad name") String other) {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class WrapperIndexTest {
+
+    private static final String TYPES = PropertyPathTest.Request.class.getName() + ",java.lang.String";
+
+    @Test
+    public void testParse() throws Exception {
+        System.out.println("testParse");
+
+        String className = MDCInterceptorTest.Beans.class.getName();
+        ParameterSpec spec = new ParameterSpec(0, TrackingIdGenerator.COUNTER, "agencyId", true, "agency.id", 3, 20, true, true, 64);
+        WrapperIndex index = new WrapperIndex(WrapperIndex.parse(new StringReader(
+                WrapperIndex.HEADER + "\n" +
+                "# comment\n" +
+                WrapperIndex.line(className, "notAnnotated", TYPES, spec) + "\n")));
+
+        assertThat(index.size(), is(1));
+        ParameterSpec parsed = index.get(MDCInterceptorTest.Beans.class.getMethod("notAnnotated", PropertyPathTest.Request.class, String.class)).get(0);
+        assertThat(parsed.position, is(0));
+        assertThat(parsed.trackingId, is(TrackingIdGenerator.COUNTER));
+        assertThat(parsed.field, is("agencyId"));
+        assertThat(parsed.includeNull, is(true));
+        assertThat(parsed.path, is("agency.id"));
+        assertThat(parsed.maxElements, is(3));
+        assertThat(parsed.maxLength, is(20));
+        assertThat(parsed.lazy, is(true));
+        assertThat(parsed.perElement, is(true));
+        assertThat(parsed.cacheSize, is(64));
+
+        assertThat(index.get(MDCInterceptorTest.Beans.class.getMethod("withPath", PropertyPathTest.Request.class)), nullValue());
+        assertThat(WrapperIndex.parse(new StringReader("#dbc-commons-mdc-wrapper-index 0\n")), nullValue());
+
+        assertThat(WrapperIndex.parse(new StringReader(
+                "#dbc-commons-mdc-wrapper-index 1\n" +
+                className + "\tnotAnnotated\t" + TYPES + "\t0\t\tagencyId\tfalse\t\t-1\t-1\tfalse\n")), nullValue());
+    }
+
+    @Test
+    public void testWrapMethodIndexed() throws Exception {
+        System.out.println("testWrapMethodIndexed");
+
+        // The method has no annotations, so the wrapper can only come from the index
+        Method method = MDCInterceptorTest.Beans.class.getMethod("notAnnotated", PropertyPathTest.Request.class, String.class);
+        WrapperIndex index = new WrapperIndex(WrapperIndex.parse(new StringReader(
+                WrapperIndex.HEADER + "\n" +
+                WrapperIndex.line(method.getDeclaringClass().getName(), method.getName(), TYPES,
+                                  new ParameterSpec(0, null, "agencyId", false, "agency.id", -1, -1, false, false, 0)) + "\n")));
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        assertThat(MDCInterceptor.wrapMethod(method, index, wrappers), nullValue());
+        MDC.clear();
+        PropertyPathTest.Request request = new PropertyPathTest.Request(new PropertyPathTest.Agency("870970"), false);
+        wrappers.get(method).call(new TestInvocationContext(method, () -> {
+            assertThat(MDC.get("agencyId"), is("870970"));
+            return null;
+        }, request, "id"));
+        assertThat(MDC.get("agencyId"), nullValue());
+    }
+}
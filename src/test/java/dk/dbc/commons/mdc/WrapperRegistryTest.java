@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2026 DBC A/S (http://dbc.dk/)
+ *
+ * This is part of dbc-commons-mdc
+ *
+ * dbc-commons-mdc is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * dbc-commons-mdc is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dbc.commons.mdc;
+
+import dk.dbc.commons.mdc.MDCInterceptor.Invoker;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jakarta.interceptor.InvocationContext;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ * @author Morten Bøgeskov (mb@dbc.dk)
+ */
+public class WrapperRegistryTest {
+
+    private static final Invoker DEFAULT = InvocationContext::proceed;
+
+    @Test
+    public void testLookup() throws Exception {
+        System.out.println("testLookup");
+
+        Map<Method, Invoker> wrappers = new HashMap<>();
+        Method[] methods = String.class.getDeclaredMethods();
+        for (Method method : methods) {
+            wrappers.put(method, ic -> method.getName());
+        }
+        WrapperRegistry registry = WrapperRegistry.EMPTY.with(wrappers);
+        assertThat(registry.size(), is(wrappers.size()));
+
+        for (Method method : methods) {
+            assertThat(registry.get(method, DEFAULT), sameInstance(wrappers.get(method)));
+        }
+        for (Method method : String.class.getDeclaredMethods()) { // Copies of the Method objects
+            assertThat(registry.get(method, DEFAULT), sameInstance(wrappers.get(method)));
+        }
+        assertThat(registry.get(Object.class.getMethod("hashCode"), DEFAULT), sameInstance(DEFAULT));
+        assertThat(WrapperRegistry.EMPTY.get(methods[0], DEFAULT), sameInstance(DEFAULT));
+    }
+
+    @Test
+    public void testWith() throws Exception {
+        System.out.println("testWith");
+
+        Method hashCode = Object.class.getMethod("hashCode");
+        Method toString = Object.class.getMethod("toString");
+        Invoker first = ic -> "first";
+        Invoker second = ic -> "second";
+        Invoker third = ic -> "third";
+
+        WrapperRegistry one = WrapperRegistry.EMPTY.with(Map.of(hashCode, first));
+        WrapperRegistry two = one.with(Map.of(hashCode, second, toString, third));
+
+        assertThat(one.size(), is(1));
+        assertThat(one.get(hashCode, DEFAULT), sameInstance(first));
+        assertThat(one.get(toString, DEFAULT), sameInstance(DEFAULT));
+        assertThat(two.size(), is(2));
+        assertThat(two.get(hashCode, DEFAULT), sameInstance(second));
+        assertThat(two.get(toString, DEFAULT), sameInstance(third));
+        assertThat(two.with(Map.of()), sameInstance(two));
+    }
+
+    @Test
+    public void testWithout() throws Exception {
+        System.out.println("testWithout");
+
+        Method hashCode = Object.class.getMethod("hashCode");
+        Method toString = Object.class.getMethod("toString");
+        Invoker first = ic -> "first";
+        Invoker second = ic -> "second";
+
+        WrapperRegistry registry = WrapperRegistry.EMPTY.with(Map.of(hashCode, first, toString, second));
+        WrapperRegistry one = registry.without(List.of(hashCode));
+
+        assertThat(one.size(), is(1));
+        assertThat(one.get(hashCode, DEFAULT), sameInstance(DEFAULT));
+        assertThat(one.get(toString, DEFAULT), sameInstance(second));
+        assertThat(registry.get(hashCode, DEFAULT), sameInstance(first));
+        assertThat(one.without(List.of(Object.class.getMethod("toString"))), sameInstance(WrapperRegistry.EMPTY));
+        assertThat(one.without(List.of()), sameInstance(one));
+    }
+}